@@ -13,6 +13,7 @@ DROP TABLE IF EXISTS attendance_records CASCADE;
 DROP TABLE IF EXISTS sessions CASCADE;
 DROP TABLE IF EXISTS classes CASCADE;
 DROP TABLE IF EXISTS courses CASCADE;
+DROP TABLE IF EXISTS face_embeddings CASCADE;
 DROP TABLE IF EXISTS face_images CASCADE;
 DROP TABLE IF EXISTS profiles CASCADE;
 DROP TABLE IF EXISTS security_events CASCADE;
@@ -53,6 +54,25 @@ CREATE TABLE face_images (
 -- Create index for faster lookups
 CREATE INDEX idx_face_images_user_id ON face_images(user_id);
 
+-- ============================================
+-- STEP 3B: CREATE FACE_EMBEDDINGS TABLE
+-- ============================================
+
+-- Precomputed ArcFace embeddings (512 little-endian float32 values, L2-normalised)
+-- Computed once at registration; model_hash identifies the ArcFace model version and face
+-- alignment mode so embeddings from an older model are ignored and recomputed after an upgrade
+CREATE TABLE face_embeddings (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    user_id VARCHAR(20) NOT NULL REFERENCES profiles(user_id) ON DELETE CASCADE,
+    image_number INTEGER,
+    model_hash VARCHAR(64) NOT NULL,
+    embedding BYTEA NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT NOW()
+);
+
+-- Session start loads a whole roster for one model version in a single query
+CREATE INDEX idx_face_embeddings_user_model ON face_embeddings(user_id, model_hash);
+
 -- ============================================
 -- STEP 4: CREATE COURSES TABLE (Course Definitions)
 -- ============================================
@@ -341,6 +361,7 @@ CREATE TRIGGER update_attendance_updated_at
 -- Enable RLS on all tables
 ALTER TABLE profiles ENABLE ROW LEVEL SECURITY;
 ALTER TABLE face_images ENABLE ROW LEVEL SECURITY;
+ALTER TABLE face_embeddings ENABLE ROW LEVEL SECURITY;
 ALTER TABLE courses ENABLE ROW LEVEL SECURITY;
 ALTER TABLE classes ENABLE ROW LEVEL SECURITY;
 ALTER TABLE sessions ENABLE ROW LEVEL SECURITY;
@@ -382,6 +403,26 @@ CREATE POLICY "Professors can read all face images"
     ON face_images FOR SELECT TO authenticated
     USING (EXISTS (SELECT 1 FROM profiles WHERE database_id = auth.uid() AND role = 'PROFESSOR'));
 
+-- FACE_EMBEDDINGS TABLE POLICIES
+CREATE POLICY "Service role full access on face_embeddings"
+    ON face_embeddings FOR ALL TO service_role USING (true) WITH CHECK (true);
+
+CREATE POLICY "Users can read own face embeddings"
+    ON face_embeddings FOR SELECT TO authenticated
+    USING (user_id IN (SELECT user_id FROM profiles WHERE database_id = auth.uid()));
+
+CREATE POLICY "Users can insert own face embeddings"
+    ON face_embeddings FOR INSERT TO authenticated
+    WITH CHECK (user_id IN (SELECT user_id FROM profiles WHERE database_id = auth.uid()));
+
+CREATE POLICY "Professors can read all face embeddings"
+    ON face_embeddings FOR SELECT TO authenticated
+    USING (EXISTS (SELECT 1 FROM profiles WHERE database_id = auth.uid() AND role = 'PROFESSOR'));
+
+CREATE POLICY "Professors can insert face embeddings"
+    ON face_embeddings FOR INSERT TO authenticated
+    WITH CHECK (EXISTS (SELECT 1 FROM profiles WHERE database_id = auth.uid() AND role = 'PROFESSOR'));
+
 -- COURSES TABLE POLICIES
 CREATE POLICY "Service role full access on courses"
     ON courses FOR ALL TO service_role USING (true) WITH CHECK (true);
@@ -523,7 +564,7 @@ ORDER BY event_object_table, trigger_name;
 DO $$
 BEGIN
     RAISE NOTICE '✅ Database schema created successfully!';
-    RAISE NOTICE 'Tables: profiles, face_images, courses, classes, sessions, attendance_records';
+    RAISE NOTICE 'Tables: profiles, face_images, face_embeddings, courses, classes, sessions, attendance_records';
     RAISE NOTICE 'Triggers: Auto-attendance marking based on check-in times';
     RAISE NOTICE 'RLS: Enabled on all tables';
     RAISE NOTICE '';
@@ -0,0 +1,98 @@
+package com.cs102.config;
+
+import ai.onnxruntime.OrtSession;
+import com.cs102.recognition.InferenceProfile;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * ONNX Runtime Configuration
+ *
+ * Binds recognition.inference.* from application.properties into the InferenceProfile used by
+ * every ArcFaceRecognizer, so thread counts and memory options can be tuned per machine
+ * without a rebuild. Values of 0 mean "choose automatically".
+ */
+@Component
+public class InferenceConfig {
+
+    /**
+     * Number of pooled ArcFace sessions that may run concurrently
+     * Default: 0 (one per two cores, at most four)
+     */
+    @Value("${recognition.inference.pool-size:0}")
+    private int poolSize;
+
+    /**
+     * Threads used inside one session
+     * Default: 0 (cores split evenly between pooled sessions)
+     */
+    @Value("${recognition.inference.intra-op-threads:0}")
+    private int intraOpThreads;
+
+    /**
+     * Threads used to run independent graph nodes in PARALLEL mode
+     * Default: 0 (ONNX Runtime default)
+     */
+    @Value("${recognition.inference.inter-op-threads:0}")
+    private int interOpThreads;
+
+    /**
+     * SEQUENTIAL or PARALLEL
+     * Default: SEQUENTIAL (ArcFace is a mostly linear graph)
+     */
+    @Value("${recognition.inference.execution-mode:SEQUENTIAL}")
+    private String executionMode;
+
+    /**
+     * NO_OPT, BASIC_OPT, EXTENDED_OPT or ALL_OPT
+     * Default: ALL_OPT
+     */
+    @Value("${recognition.inference.optimization-level:ALL_OPT}")
+    private String optimizationLevel;
+
+    /**
+     * Enable the CPU memory arena
+     * Default: true
+     */
+    @Value("${recognition.inference.memory-arena:true}")
+    private boolean memoryArena;
+
+    /**
+     * Enable memory pattern planning for repeated input shapes
+     * Default: true
+     */
+    @Value("${recognition.inference.memory-pattern:true}")
+    private boolean memoryPattern;
+
+    /**
+     * File used to cache the optimised model between launches (model hash is appended)
+     * Default: empty (disabled)
+     */
+    @Value("${recognition.inference.optimized-model-path:}")
+    private String optimizedModelPath;
+
+    @PostConstruct
+    public void init() {
+        InferenceProfile profile = toProfile();
+        InferenceProfile.setDefault(profile);
+        System.out.println("Inference profile: poolSize=" + (poolSize > 0 ? poolSize : "auto")
+                + ", intraOp=" + (intraOpThreads > 0 ? intraOpThreads : "auto") + ", " + profile.describe());
+    }
+
+    /**
+     * Build the inference profile from the bound properties
+     */
+    public InferenceProfile toProfile() {
+        InferenceProfile profile = new InferenceProfile();
+        profile.setPoolSize(poolSize);
+        profile.setIntraOpThreads(intraOpThreads);
+        profile.setInterOpThreads(interOpThreads);
+        profile.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.valueOf(executionMode.trim().toUpperCase()));
+        profile.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.valueOf(optimizationLevel.trim().toUpperCase()));
+        profile.setMemoryArena(memoryArena);
+        profile.setMemoryPattern(memoryPattern);
+        profile.setOptimizedModelPath(optimizedModelPath);
+        return profile;
+    }
+}
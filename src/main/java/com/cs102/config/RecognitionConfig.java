@@ -0,0 +1,92 @@
+package com.cs102.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Live Recognition Configuration
+ *
+ * Binds recognition.detection.*, recognition.alignment.* and recognition.cameras from
+ * application.properties. The defaults below also apply when the class is created with new,
+ * e.g. by the headless RecognitionReplay tool.
+ */
+@Component
+@ConfigurationProperties(prefix = "recognition")
+public class RecognitionConfig {
+
+    private final Detection detection = new Detection();
+
+    private final Alignment alignment = new Alignment();
+
+    /**
+     * Cameras used by live recognition, comma separated: device indices (e.g. "0") or video file paths
+     * Default: 0
+     */
+    private String cameras = "0";
+
+    public Detection getDetection() {
+        return detection;
+    }
+
+    public Alignment getAlignment() {
+        return alignment;
+    }
+
+    public String getCameras() {
+        return cameras;
+    }
+
+    public void setCameras(String cameras) {
+        this.cameras = cameras;
+    }
+
+    /**
+     * Camera sources parsed from {@link #getCameras()}
+     */
+    public List<String> getCameraSources() {
+        List<String> sources = new ArrayList<>();
+        for (String source : cameras.split(",")) {
+            if (!source.isBlank()) {
+                sources.add(source.trim());
+            }
+        }
+        return sources;
+    }
+
+    public static class Detection {
+
+        /**
+         * Width YuNet detects at in live recognition and registration
+         * Default: 320 (0 = full camera resolution)
+         */
+        private int width = 320;
+
+        public int getWidth() {
+            return width;
+        }
+
+        public void setWidth(int width) {
+            this.width = width;
+        }
+    }
+
+    public static class Alignment {
+
+        /**
+         * Warp faces to the ArcFace landmark template at registration and recognition
+         * Default: true
+         */
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.cs102.manager;
 
+import com.cs102.config.RecognitionConfig;
 import com.cs102.model.User;
 import com.cs102.model.UserRole;
+import com.cs102.service.AttendanceCheckInWriter;
 import com.cs102.service.IntrusionDetectionService;
+import com.cs102.service.RecognitionModelService;
+import com.cs102.service.RosterImportService;
 import com.cs102.service.SessionAnomalyDetector;
 import com.cs102.service.SupabaseAuthService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -29,6 +33,18 @@ public class AuthenticationManager {
     @Autowired
     private BackupManager backupManager;
 
+    @Autowired
+    private RecognitionModelService recognitionModelService;
+
+    @Autowired
+    private RecognitionConfig recognitionConfig;
+
+    @Autowired
+    private AttendanceCheckInWriter attendanceCheckInWriter;
+
+    @Autowired
+    private RosterImportService rosterImportService;
+
     /**
      * Register a new user with Supabase Auth and create profile
      * @param userId Student ID (e.g., S12345) - primary key for profiles
@@ -171,7 +187,9 @@ public class AuthenticationManager {
      */
     public void saveFaceImages(User user, java.util.List<byte[]> faceImages) {
         try {
-            databaseManager.saveFaceImages(user.getUserId(), faceImages);
+            // Embed first, so ArcFace inference does not run inside the database transaction
+            java.util.List<float[]> embeddings = databaseManager.computeFaceEmbeddings(faceImages);
+            databaseManager.saveFaceImages(user.getUserId(), faceImages, embeddings);
         } catch (Exception e) {
             System.err.println("Error saving face images: " + e.getMessage());
             throw new RuntimeException("Failed to save face images: " + e.getMessage(), e);
@@ -240,6 +258,38 @@ public class AuthenticationManager {
         return databaseManager;
     }
 
+    /**
+     * Get the RecognitionModelService instance
+     * @return RecognitionModelService instance
+     */
+    public RecognitionModelService getRecognitionModelService() {
+        return recognitionModelService;
+    }
+
+    /**
+     * Get the RecognitionConfig instance
+     * @return RecognitionConfig instance
+     */
+    public RecognitionConfig getRecognitionConfig() {
+        return recognitionConfig;
+    }
+
+    /**
+     * Get the AttendanceCheckInWriter instance
+     * @return AttendanceCheckInWriter instance
+     */
+    public AttendanceCheckInWriter getAttendanceCheckInWriter() {
+        return attendanceCheckInWriter;
+    }
+
+    /**
+     * Get the RosterImportService instance
+     * @return RosterImportService instance
+     */
+    public RosterImportService getRosterImportService() {
+        return rosterImportService;
+    }
+
     /**
      * Get the IntrusionDetectionService instance
      * @return IntrusionDetectionService instance
@@ -13,11 +13,14 @@ import com.cs102.repository.CourseRepository;
 import com.cs102.repository.FaceImageRepository;
 import com.cs102.repository.SessionRepository;
 import com.cs102.repository.UserRepository;
+import com.cs102.service.FaceEmbeddingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -42,6 +45,9 @@ public class DatabaseManager {
     @Autowired
     private CourseRepository courseRepository;
 
+    @Autowired
+    private FaceEmbeddingService faceEmbeddingService;
+
     // ========== User Management ==========
 
     public User saveUser(User user) {
@@ -52,6 +58,13 @@ public class DatabaseManager {
         return userRepository.findByUserId(userId);
     }
 
+    public List<User> findUsersByUserIds(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return userRepository.findByUserIdIn(userIds);
+    }
+
     public Optional<User> findUserByDatabaseId(UUID databaseId) {
         return userRepository.findByDatabaseId(databaseId);
     }
@@ -86,6 +99,49 @@ public class DatabaseManager {
         return attendanceRecordRepository.save(record);
     }
 
+    /**
+     * Apply a batch of check-ins with one upsert statement per session
+     * Missing records are created, records without a check-in time are filled in, and students
+     * already checked in are left untouched.
+     * @param checkIns Unsaved records carrying user, session, status, method and check-in time
+     *                 (Singapore local time); only the first check-in of a student per session is used
+     * @return Number of records written
+     */
+    @Transactional
+    public int saveCheckIns(List<AttendanceRecord> checkIns) {
+        // One statement per session and method; a student may appear only once per statement
+        Map<String, Map<String, AttendanceRecord>> groups = new java.util.LinkedHashMap<>();
+        for (AttendanceRecord checkIn : checkIns) {
+            groups.computeIfAbsent(checkIn.getSessionId() + "/" + checkIn.getMethod(),
+                    key -> new java.util.LinkedHashMap<>()).putIfAbsent(checkIn.getUserId(), checkIn);
+        }
+
+        int written = 0;
+        for (Map<String, AttendanceRecord> group : groups.values()) {
+            List<AttendanceRecord> records = new java.util.ArrayList<>(group.values());
+            String[] userIds = new String[records.size()];
+            java.time.LocalDateTime[] checkinTimes = new java.time.LocalDateTime[records.size()];
+            String[] attendances = new String[records.size()];
+            for (int i = 0; i < records.size(); i++) {
+                userIds[i] = records.get(i).getUserId();
+                checkinTimes[i] = records.get(i).getCheckinTime();
+                attendances[i] = records.get(i).getAttendance();
+            }
+            AttendanceRecord first = records.get(0);
+            written += attendanceRecordRepository.upsertCheckIns(first.getSessionId(), first.getMethod(),
+                    userIds, checkinTimes, attendances);
+        }
+        return written;
+    }
+
+    /**
+     * Save many attendance records with batched statements
+     */
+    @Transactional
+    public List<AttendanceRecord> saveAttendanceRecords(List<AttendanceRecord> records) {
+        return attendanceRecordRepository.saveAll(records);
+    }
+
     public List<AttendanceRecord> findAttendanceByUserId(String userId) {
         return attendanceRecordRepository.findByUserId(userId);
     }
@@ -177,6 +233,19 @@ public class DatabaseManager {
         return classRepository.save(classEnrollment);
     }
 
+    /**
+     * Insert many enrollments with batched statements
+     * Enrollments must be new (not already in the table).
+     */
+    @Transactional
+    public List<Class> saveClassEnrollments(List<Class> enrollments) {
+        long start = System.currentTimeMillis();
+        List<Class> saved = classRepository.saveAll(enrollments);
+        classRepository.flush();
+        System.out.println("Saved " + enrollments.size() + " enrollments in " + (System.currentTimeMillis() - start) + "ms");
+        return saved;
+    }
+
     public List<Class> findEnrollmentsByUserId(String userId) {
         return classRepository.findByUserId(userId);
     }
@@ -196,18 +265,48 @@ public class DatabaseManager {
 
     // ========== Face Image Management ==========
 
-    @Transactional
-    public void saveFaceImages(String userId, List<byte[]> faceImages) {
+    /**
+     * Compute ArcFace embeddings for registration face images
+     * Call before {@link #saveFaceImages}: inference (and the first model load) runs outside the
+     * transaction so it never holds a pooled database connection.
+     * @return One embedding per image (null where undecodable), or null if ArcFace is unavailable
+     */
+    public List<float[]> computeFaceEmbeddings(List<byte[]> faceImages) {
+        try {
+            return faceEmbeddingService.computeEmbeddings(faceImages);
+        } catch (Exception e) {
+            System.err.println("Failed to compute face embeddings (will be computed on first recognition): "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replace a student's face images and precomputed embeddings in one transaction
+     * @param embeddings From {@link #computeFaceEmbeddings}, or null to compute them on first recognition
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void saveFaceImages(String userId, List<byte[]> faceImages, List<float[]> embeddings) throws Exception {
         // Delete existing face images for this student
         faceImageRepository.deleteByUserId(userId);
 
-        // Save new face images
+        // Save new face images in one JDBC batch
+        long start = System.currentTimeMillis();
+        List<FaceImage> rows = new java.util.ArrayList<>(faceImages.size());
         for (int i = 0; i < faceImages.size(); i++) {
-            FaceImage faceImage = new FaceImage(userId, faceImages.get(i), i + 1);
-            faceImageRepository.save(faceImage);
+            rows.add(new FaceImage(userId, faceImages.get(i), i + 1));
         }
+        faceImageRepository.saveAll(rows);
+        faceImageRepository.flush();
 
-        System.out.println("Saved " + faceImages.size() + " face images for student: " + userId);
+        System.out.println("Saved " + faceImages.size() + " face images for student: " + userId + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+
+        if (embeddings != null) {
+            faceEmbeddingService.replaceEmbeddings(userId, embeddings);
+        } else {
+            faceEmbeddingService.deleteEmbeddings(userId);
+        }
     }
 
     public List<FaceImage> findFaceImagesByUserId(String userId) {
@@ -217,6 +316,25 @@ public class DatabaseManager {
     @Transactional
     public void deleteFaceImagesByUserId(String userId) {
         faceImageRepository.deleteByUserId(userId);
+        faceEmbeddingService.deleteEmbeddings(userId);
+    }
+
+    /**
+     * Load precomputed ArcFace embeddings for a set of students in one bulk read
+     * Students without stored embeddings for the current model are backfilled from their face images.
+     * @param userIds Students to load
+     * @return Map of userId to that student's embeddings
+     */
+    public Map<String, float[][]> loadFaceEmbeddings(Collection<String> userIds) throws Exception {
+        return faceEmbeddingService.loadEmbeddings(userIds);
+    }
+
+    /**
+     * Delete stored embeddings that belong to other ArcFace model versions
+     * @return Number of embeddings deleted
+     */
+    public int purgeStaleFaceEmbeddings() throws Exception {
+        return faceEmbeddingService.purgeOtherModelEmbeddings();
     }
 
     // ========== Student Attendance View Helpers ==========
@@ -1,6 +1,8 @@
 package com.cs102.model;
 
 import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -8,7 +10,7 @@ import java.util.Objects;
 @Entity
 @Table(name = "classes")
 @IdClass(Class.ClassId.class)
-public class Class {
+public class Class implements Persistable<Class.ClassId> {
 
     @Id
     @Column(name = "course", length = 50, nullable = false)
@@ -25,6 +27,10 @@ public class Class {
     @Column(name = "enrolled_at", nullable = false)
     private LocalDateTime enrolledAt;
 
+    // The key is assigned, not generated: without this flag save() would SELECT each row before inserting it
+    @Transient
+    private boolean isNew = true;
+
     public Class() {
         this.enrolledAt = LocalDateTime.now();
     }
@@ -69,6 +75,22 @@ public class Class {
         this.enrolledAt = enrolledAt;
     }
 
+    @Override
+    public ClassId getId() {
+        return new ClassId(course, section, userId);
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
     // Composite Primary Key Class
     public static class ClassId implements Serializable {
         private String course;
@@ -0,0 +1,117 @@
+package com.cs102.model;
+
+import jakarta.persistence.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "face_embeddings")
+public class FaceEmbedding {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @Column(name = "user_id", length = 20, nullable = false)
+    private String userId;  // Foreign key to profiles.user_id
+
+    @Column(name = "image_number")
+    private Integer imageNumber;  // Matches face_images.image_number it was computed from
+
+    @Column(name = "model_hash", length = 64, nullable = false)
+    private String modelHash;  // ArcFace model and alignment mode that produced the vector
+
+    @Column(name = "embedding", columnDefinition = "bytea", nullable = false)
+    private byte[] embedding;  // 512 little-endian float32 values, L2-normalised
+
+    @Column(name = "created_at", nullable = false, columnDefinition = "TIMESTAMP")
+    private LocalDateTime createdAt;
+
+    public FaceEmbedding() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public FaceEmbedding(String userId, Integer imageNumber, String modelHash, float[] vector) {
+        this.userId = userId;
+        this.imageNumber = imageNumber;
+        this.modelHash = modelHash;
+        this.embedding = toBytes(vector);
+        this.createdAt = LocalDateTime.now();
+    }
+
+    /**
+     * Decode the stored embedding into a float vector
+     */
+    public float[] getVector() {
+        return fromBytes(embedding);
+    }
+
+    /**
+     * Encode a float vector as little-endian float32 bytes
+     */
+    public static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    /**
+     * Decode little-endian float32 bytes into a float vector
+     */
+    public static float[] fromBytes(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    // Getters and Setters
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public Integer getImageNumber() {
+        return imageNumber;
+    }
+
+    public void setImageNumber(Integer imageNumber) {
+        this.imageNumber = imageNumber;
+    }
+
+    public String getModelHash() {
+        return modelHash;
+    }
+
+    public void setModelHash(String modelHash) {
+        this.modelHash = modelHash;
+    }
+
+    public byte[] getEmbedding() {
+        return embedding;
+    }
+
+    public void setEmbedding(byte[] embedding) {
+        this.embedding = embedding;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
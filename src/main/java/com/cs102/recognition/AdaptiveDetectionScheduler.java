@@ -0,0 +1,164 @@
+package com.cs102.recognition;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Decides how often face detection runs
+ *
+ * Detection runs at the fastest rate while the scene is changing (enough of a small grey
+ * thumbnail differs from the previous frame, or faces appear / disappear) and backs off
+ * gradually to the slowest rate (~1 Hz) while the room is static. A motion burst cuts a long
+ * wait short, so a student walking in is picked up within one fast interval. The interval
+ * never drops below the pipeline's own recent processing latency, so a slow machine is not
+ * asked for more detections than it can finish.
+ */
+public class AdaptiveDetectionScheduler {
+
+    private static final long DEFAULT_MIN_INTERVAL_MILLIS = 66;   // ~15 Hz while busy
+    private static final long DEFAULT_MAX_INTERVAL_MILLIS = 1000; // ~1 Hz while static
+    private static final double DEFAULT_MOTION_THRESHOLD = 0.01;  // Fraction of thumbnail pixels that changed
+    private static final double PIXEL_CHANGE_LEVEL = 20;          // Grey-level difference that counts as a change
+    private static final double BACK_OFF_FACTOR = 1.5;            // Interval growth per static detection
+    private static final int MOTION_WIDTH = 64;                   // Width of the thumbnail used for differencing
+    private static final double RATE_SMOOTHING = 0.3;             // EWMA weight of the newest interval
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private double motionThreshold = DEFAULT_MOTION_THRESHOLD;
+
+    // Motion estimate (frame thread)
+    private final Mat thumbnail = new Mat();
+    private final Mat grey = new Mat();
+    private final Mat previous = new Mat();
+    private final Mat difference = new Mat();
+    private double motion;
+    private double peakMotion; // Highest motion since the last detection
+
+    // Schedule (detection thread)
+    private long intervalMillis;
+    private long latencyFloorMillis; // Recent pipeline latency; no interval is shorter
+    private long lastDetectionMillis;
+    private double rateHz;
+    private String reason = "starting";
+
+    public AdaptiveDetectionScheduler() {
+        this(DEFAULT_MIN_INTERVAL_MILLIS, DEFAULT_MAX_INTERVAL_MILLIS);
+    }
+
+    public AdaptiveDetectionScheduler(long minIntervalMillis, long maxIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = Math.max(minIntervalMillis, maxIntervalMillis);
+        this.intervalMillis = minIntervalMillis;
+    }
+
+    public synchronized void setMotionThreshold(double motionThreshold) {
+        this.motionThreshold = motionThreshold;
+    }
+
+    /**
+     * Update the motion estimate from a camera frame
+     * Cheap (a 64px wide thumbnail), so it can be called for every frame.
+     */
+    public synchronized void observeFrame(Mat frame) {
+        if (frame.empty()) {
+            return;
+        }
+        int height = Math.max(1, frame.rows() * MOTION_WIDTH / frame.cols());
+        Imgproc.resize(frame, thumbnail, new Size(MOTION_WIDTH, height), 0, 0, Imgproc.INTER_AREA);
+        if (thumbnail.channels() == 1) {
+            thumbnail.copyTo(grey);
+        } else {
+            Imgproc.cvtColor(thumbnail, grey, Imgproc.COLOR_BGR2GRAY);
+        }
+
+        if (!previous.empty() && previous.size().equals(grey.size())) {
+            Core.absdiff(grey, previous, difference);
+            Imgproc.threshold(difference, difference, PIXEL_CHANGE_LEVEL, 255, Imgproc.THRESH_BINARY);
+            motion = (double) Core.countNonZero(difference) / difference.total();
+            peakMotion = Math.max(peakMotion, motion);
+        }
+        grey.copyTo(previous);
+    }
+
+    /**
+     * Milliseconds until the next detection is due (0 if due now)
+     */
+    public synchronized long millisUntilDue() {
+        long elapsed = System.currentTimeMillis() - lastDetectionMillis;
+        long interval = peakMotion >= motionThreshold
+                ? Math.max(latencyFloorMillis, Math.min(intervalMillis, minIntervalMillis))
+                : intervalMillis;
+        return Math.max(0, interval - elapsed);
+    }
+
+    /**
+     * Record a finished detection and choose the next interval
+     * @param churn Faces that appeared or disappeared (e.g. tracks created + lost) in this detection
+     * @param latencyMillis Recent processing latency of the pipeline
+     */
+    public synchronized void onDetection(int churn, double latencyMillis) {
+        long now = System.currentTimeMillis();
+        if (lastDetectionMillis > 0) {
+            double instantRate = 1000.0 / Math.max(1, now - lastDetectionMillis);
+            rateHz = rateHz == 0 ? instantRate : RATE_SMOOTHING * instantRate + (1 - RATE_SMOOTHING) * rateHz;
+        }
+        lastDetectionMillis = now;
+
+        if (peakMotion >= motionThreshold) {
+            intervalMillis = minIntervalMillis;
+            reason = "motion";
+        } else if (churn > 0) {
+            intervalMillis = minIntervalMillis;
+            reason = "faces changing";
+        } else {
+            intervalMillis = Math.min(maxIntervalMillis, (long) (intervalMillis * BACK_OFF_FACTOR));
+            reason = intervalMillis >= maxIntervalMillis ? "static" : "settling";
+        }
+
+        // Never schedule faster than the pipeline finishes
+        latencyFloorMillis = Math.min(maxIntervalMillis, (long) Math.ceil(latencyMillis));
+        if (latencyMillis > intervalMillis) {
+            intervalMillis = Math.min(maxIntervalMillis, (long) Math.ceil(latencyMillis));
+            reason = "load";
+        }
+        peakMotion = 0;
+    }
+
+    /**
+     * Detections per second actually achieved (smoothed)
+     */
+    public synchronized double getRateHz() {
+        return rateHz;
+    }
+
+    public synchronized long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * Fraction of the frame that changed between the last two observed frames (0-1)
+     */
+    public synchronized double getMotion() {
+        return motion;
+    }
+
+    /**
+     * Short status for the UI, e.g. "Detection 14.8 Hz (motion)"
+     */
+    public synchronized String describe() {
+        return String.format("Detection %.1f Hz (%s)", rateHz, reason);
+    }
+
+    /**
+     * Release native buffers
+     */
+    public synchronized void release() {
+        thumbnail.release();
+        grey.release();
+        previous.release();
+        difference.release();
+    }
+}
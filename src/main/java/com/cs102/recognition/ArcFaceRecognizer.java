@@ -4,9 +4,9 @@ import ai.onnxruntime.*;
 import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
 
-import java.nio.FloatBuffer;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * ArcFace-based face recognition using ONNX Runtime
@@ -15,51 +15,55 @@ import java.util.Map;
 public class ArcFaceRecognizer {
 
     private OrtEnvironment env;
-    private OrtSession session;
+    private InferencePool pool;
+    private final Map<OrtSession, TensorInputBuffer> inputBuffers = new ConcurrentHashMap<>(); // One per pooled session
+    private String modelHash; // SHA-256 of the model file, used to version stored embeddings
+    private String inputName;
+    private boolean supportsBatching; // true when the model's batch dimension is dynamic
     private static final int INPUT_SIZE = 112; // ArcFace standard input size
-    private static final int EMBEDDING_SIZE = 512; // ArcFace embedding dimension
+    static final int EMBEDDING_SIZE = 512; // ArcFace embedding dimension
+
+    // arc.onnx extracted from the classpath once per JVM (path, hash)
+    private static String extractedModelPath;
+    private static String extractedModelHash;
 
     /**
      * Initialize ArcFace model from resources
+     * Uses the application-wide inference profile (see InferenceProfile.getDefault()).
      */
     public ArcFaceRecognizer() throws Exception {
-        // Try to load from resources
-        java.io.InputStream is = getClass().getClassLoader()
-            .getResourceAsStream("arc.onnx");
-
-        if (is == null) {
-            throw new Exception(
-                "ArcFace model not found in resources!\n\n" +
-                "Please ensure the model file exists:\n" +
-                "1. File should be at: src/main/resources/arc.onnx\n" +
-                "2. Run: mvn clean install\n" +
-                "3. Restart application"
-            );
-        }
-
-        // Extract to temp file
-        java.io.File tempFile = java.io.File.createTempFile("arcface", ".onnx");
-        tempFile.deleteOnExit();
-
-        java.nio.file.Files.copy(is, tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-        is.close();
-
-        String modelPath = tempFile.getAbsolutePath();
+        this(InferenceProfile.getDefault());
+    }
 
-        env = OrtEnvironment.getEnvironment();
-        OrtSession.SessionOptions opts = new OrtSession.SessionOptions();
+    /**
+     * Initialize ArcFace model from resources with a fixed number of pooled sessions
+     * @param poolSize Number of ONNX sessions that may run inference concurrently
+     */
+    public ArcFaceRecognizer(int poolSize) throws Exception {
+        this(InferenceProfile.getDefault().withPoolSize(poolSize));
+    }
 
-        // Optimize for inference
-        opts.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
-        opts.setIntraOpNumThreads(4); // Use 4 threads for faster processing
+    /**
+     * Initialize ArcFace model from resources with explicit ONNX Runtime settings
+     * @param profile Threads, execution mode, memory options and optimised-model cache
+     */
+    public ArcFaceRecognizer(InferenceProfile profile) throws Exception {
+        String modelPath = extractModelFromResources();
+        modelHash = extractedModelHash;
 
-        session = env.createSession(modelPath, opts);
+        initializePool(modelPath, profile);
 
+        OrtSession session = pool.anySession();
         System.out.println("ArcFace model loaded successfully from resources");
         System.out.println("  Input names: " + session.getInputNames());
         System.out.println("  Output names: " + session.getOutputNames());
-        System.out.println("  Input shape: [1, 3, " + INPUT_SIZE + ", " + INPUT_SIZE + "]");
+        System.out.println("  Input shape: [N, " + INPUT_SIZE + ", " + INPUT_SIZE + ", 3]");
         System.out.println("  Output embedding size: " + EMBEDDING_SIZE);
+        System.out.println("  Batched inference: " + (supportsBatching ? "enabled" : "disabled (fixed batch size)"));
+        System.out.println("  Similarity kernel: " + VectorMath.describeKernel());
+        System.out.println("  Inference pool: " + pool.getPoolSize() + " sessions x "
+                + pool.getIntraOpThreads() + " intra-op threads");
+        System.out.println("  Inference profile: " + profile.describe());
     }
 
     /**
@@ -67,18 +71,197 @@ public class ArcFaceRecognizer {
      * @param modelPath Path to the ArcFace ONNX model file
      */
     public ArcFaceRecognizer(String modelPath) throws OrtException {
-        env = OrtEnvironment.getEnvironment();
-        OrtSession.SessionOptions opts = new OrtSession.SessionOptions();
+        this(modelPath, InferenceProfile.getDefault());
+    }
 
-        // Optimize for inference
-        opts.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
-        opts.setIntraOpNumThreads(4); // Use 4 threads for faster processing
+    /**
+     * Initialize ArcFace model with custom model path and a fixed number of pooled sessions
+     * @param modelPath Path to the ArcFace ONNX model file
+     * @param poolSize Number of ONNX sessions that may run inference concurrently
+     */
+    public ArcFaceRecognizer(String modelPath, int poolSize) throws OrtException {
+        this(modelPath, InferenceProfile.getDefault().withPoolSize(poolSize));
+    }
+
+    /**
+     * Initialize ArcFace model with custom model path and explicit ONNX Runtime settings
+     * @param modelPath Path to the ArcFace ONNX model file
+     * @param profile Threads, execution mode, memory options and optimised-model cache
+     */
+    public ArcFaceRecognizer(String modelPath, InferenceProfile profile) throws OrtException {
+        try {
+            modelHash = sha256(java.nio.file.Files.readAllBytes(java.nio.file.Path.of(modelPath)));
+        } catch (java.io.IOException e) {
+            throw new OrtException("Failed to read ArcFace model: " + e.getMessage());
+        }
 
-        session = env.createSession(modelPath, opts);
+        initializePool(modelPath, profile);
 
         System.out.println("ArcFace model loaded successfully");
-        System.out.println("  Input shape: [1, 3, " + INPUT_SIZE + ", " + INPUT_SIZE + "]");
+        System.out.println("  Input shape: [N, " + INPUT_SIZE + ", " + INPUT_SIZE + ", 3]");
         System.out.println("  Output embedding size: " + EMBEDDING_SIZE);
+        System.out.println("  Inference pool: " + pool.getPoolSize() + " sessions x "
+                + pool.getIntraOpThreads() + " intra-op threads");
+        System.out.println("  Inference profile: " + profile.describe());
+    }
+
+    /**
+     * Extract arc.onnx from the classpath to a temp file, once per JVM
+     * The file is named after the model hash and reused across launches while its contents still
+     * hash to that value; otherwise it is rewritten through a temp file and an atomic move.
+     * @return Absolute path of the extracted model
+     */
+    private static synchronized String extractModelFromResources() throws Exception {
+        if (extractedModelPath != null) {
+            return extractedModelPath;
+        }
+
+        byte[] modelBytes;
+        try (java.io.InputStream is = ArcFaceRecognizer.class.getClassLoader().getResourceAsStream("arc.onnx")) {
+            if (is == null) {
+                throw new Exception(
+                    "ArcFace model not found in resources!\n\n" +
+                    "Please ensure the model file exists:\n" +
+                    "1. File should be at: src/main/resources/arc.onnx\n" +
+                    "2. Run: mvn clean install\n" +
+                    "3. Restart application"
+                );
+            }
+            modelBytes = is.readAllBytes();
+        }
+
+        String hash = sha256(modelBytes);
+        java.nio.file.Path modelFile = java.nio.file.Path.of(System.getProperty("java.io.tmpdir"),
+                "cs102-arcface-" + hash.substring(0, 16) + ".onnx");
+
+        // A truncated or replaced file of the same size must not be loaded
+        boolean intact = java.nio.file.Files.exists(modelFile)
+                && java.nio.file.Files.size(modelFile) == modelBytes.length
+                && sha256(java.nio.file.Files.readAllBytes(modelFile)).equals(hash);
+        if (!intact) {
+            java.nio.file.Path tempFile = java.nio.file.Files.createTempFile(modelFile.getParent(), "arcface", ".tmp");
+            try {
+                java.nio.file.Files.write(tempFile, modelBytes);
+                java.nio.file.Files.move(tempFile, modelFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                        java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                java.nio.file.Files.deleteIfExists(tempFile);
+            }
+        }
+
+        extractedModelHash = hash;
+        extractedModelPath = modelFile.toAbsolutePath().toString();
+        return extractedModelPath;
+    }
+
+    /**
+     * Create the session pool and read the model's input metadata
+     * If the profile names an optimised-model cache, the first session writes the optimised graph
+     * there and later launches load it directly, skipping graph optimisation at startup.
+     */
+    private void initializePool(String modelPath, InferenceProfile profile) throws OrtException {
+        env = OrtEnvironment.getEnvironment();
+
+        String sessionModelPath = modelPath;
+        String optimizedOutputPath = null;
+        OrtSession.SessionOptions.OptLevel cachedLevel = null;
+        if (profile.getOptimizedModelPath() != null) {
+            String cachePath = optimizedModelCachePath(profile.getOptimizedModelPath(), profile.getOptimizationLevel());
+            if (java.nio.file.Files.exists(java.nio.file.Path.of(cachePath))) {
+                sessionModelPath = cachePath;
+                cachedLevel = OrtSession.SessionOptions.OptLevel.NO_OPT; // Already optimised
+                System.out.println("Using cached optimised ArcFace model: " + cachePath);
+            } else {
+                optimizedOutputPath = cachePath;
+            }
+        }
+
+        final String finalModelPath = sessionModelPath;
+        final String[] pendingOptimizedOutput = {optimizedOutputPath};
+        final OrtSession.SessionOptions.OptLevel finalCachedLevel = cachedLevel;
+
+        pool = new InferencePool(intraOpThreads -> {
+            // Cores are split between pooled sessions unless the profile fixes the thread count
+            OrtSession.SessionOptions opts = profile.createSessionOptions(intraOpThreads);
+            if (finalCachedLevel != null) {
+                opts.setOptimizationLevel(finalCachedLevel);
+            }
+            // Only the first session writes the optimised model
+            if (pendingOptimizedOutput[0] != null) {
+                java.io.File parent = new java.io.File(pendingOptimizedOutput[0]).getAbsoluteFile().getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                opts.setOptimizedModelFilePath(pendingOptimizedOutput[0]);
+                pendingOptimizedOutput[0] = null;
+            }
+
+            return env.createSession(finalModelPath, opts);
+        }, profile.resolvePoolSize(), profile.getIntraOpThreads());
+
+        // Each input buffer lives exactly as long as its session (borrowed sessions outlive pool.close())
+        pool.setSessionCloseHook(session -> {
+            TensorInputBuffer input = inputBuffers.remove(session);
+            if (input != null) {
+                input.close();
+            }
+        });
+
+        inspectInput(pool.anySession());
+    }
+
+    /**
+     * Optimised-model cache file for this model: the configured path with the model hash and
+     * optimisation level appended, so replacing arc.onnx or changing the level never loads a
+     * stale optimised graph
+     */
+    private String optimizedModelCachePath(String configuredPath, OrtSession.SessionOptions.OptLevel level) {
+        String suffix = "-" + modelHash.substring(0, 16) + "-" + level.name().toLowerCase(java.util.Locale.ROOT);
+        int dot = configuredPath.lastIndexOf('.');
+        int separator = Math.max(configuredPath.lastIndexOf('/'), configuredPath.lastIndexOf('\\'));
+        if (dot > separator) {
+            return configuredPath.substring(0, dot) + suffix + configuredPath.substring(dot);
+        }
+        return configuredPath + suffix + ".onnx";
+    }
+
+    /**
+     * Read the model's input name and check whether its batch dimension is dynamic
+     */
+    private void inspectInput(OrtSession session) throws OrtException {
+        inputName = session.getInputNames().iterator().next();
+        NodeInfo inputInfo = session.getInputInfo().get(inputName);
+        if (inputInfo.getInfo() instanceof TensorInfo) {
+            long[] inputShape = ((TensorInfo) inputInfo.getInfo()).getShape();
+            supportsBatching = inputShape.length > 0 && inputShape[0] < 0;
+        }
+    }
+
+    /**
+     * Hex SHA-256 digest of model bytes
+     */
+    private static String sha256(byte[] bytes) {
+        try {
+            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
+            return java.util.HexFormat.of().formatHex(digest.digest(bytes));
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * SHA-256 of the loaded model file
+     * Stored next to precomputed embeddings so vectors from a different model are never mixed in.
+     */
+    public String getModelHash() {
+        return modelHash;
+    }
+
+    /**
+     * Pool of ONNX sessions backing this recognizer, exposed for queue-depth and wait-time metrics
+     */
+    public InferencePool getInferencePool() {
+        return pool;
     }
 
     /**
@@ -107,68 +290,69 @@ public class ArcFaceRecognizer {
 
     /**
      * Extract face embedding from preprocessed face image
-     * Thread-safe: synchronized to prevent concurrent ONNX session access
+     * Thread-safe: each call borrows its own session from the inference pool
      * @param face Preprocessed face Mat (112x112 RGB)
      * @return 512-dimensional embedding vector
      */
-    public synchronized float[] extractEmbedding(Mat face) throws OrtException {
-        // Convert Mat to float array [1, 112, 112, 3] in HWC format
-        float[] inputArray = matToFloatArray(face);
-
-        // Create ONNX tensor with HWC shape (Height, Width, Channels)
-        long[] shape = {1, INPUT_SIZE, INPUT_SIZE, 3};
-        OnnxTensor tensor = OnnxTensor.createTensor(env, FloatBuffer.wrap(inputArray), shape);
-
-        // Run inference
-        Map<String, OnnxTensor> inputs = new HashMap<>();
-        // Use the actual input name from the model (get first input name)
-        String inputName = session.getInputNames().iterator().next();
-        inputs.put(inputName, tensor);
-
-        OrtSession.Result results = session.run(inputs);
-
-        // Extract embedding
-        float[][] output = (float[][]) results.get(0).getValue();
-        float[] embedding = output[0];
+    public float[] extractEmbedding(Mat face) throws OrtException {
+        return runInference(List.of(face))[0];
+    }
 
-        // Normalize embedding (L2 normalization)
-        embedding = normalizeEmbedding(embedding);
+    /**
+     * Extract embeddings for several preprocessed faces with a single inference call
+     * All faces are packed into one [N, 112, 112, 3] tensor so the cost of a frame with
+     * many students stays close to the cost of a frame with one.
+     * Falls back to one call per face if the model has a fixed batch size of 1.
+     * @param faces Preprocessed face Mats (112x112 RGB)
+     * @return One 512-dimensional embedding per face, in the same order as the input
+     */
+    public float[][] extractEmbeddings(List<Mat> faces) throws OrtException {
+        if (faces.isEmpty()) {
+            return new float[0][];
+        }
 
-        // Clean up
-        tensor.close();
-        results.close();
+        if (supportsBatching || faces.size() == 1) {
+            return runInference(faces);
+        }
 
-        return embedding;
+        float[][] embeddings = new float[faces.size()][];
+        for (int i = 0; i < faces.size(); i++) {
+            embeddings[i] = runInference(List.of(faces.get(i)))[0];
+        }
+        return embeddings;
     }
 
     /**
-     * Convert OpenCV Mat to float array in HWC (Height, Width, Channel) format
-     * Applies normalization: (pixel / 255.0 - 0.5) / 0.5
+     * Run one ONNX inference over a batch of preprocessed faces
+     * Faces are normalised into the borrowed session's reusable native buffer, which also backs
+     * the input tensor, so the 10 Hz recognition loop does not allocate per face.
      */
-    private float[] matToFloatArray(Mat mat) {
-        int channels = mat.channels();
-        int height = mat.rows();
-        int width = mat.cols();
-
-        float[] array = new float[height * width * channels];
-        byte[] data = new byte[(int) mat.total() * channels];
-        mat.get(0, 0, data);
-
-        // Convert to HWC format with normalization
-        for (int h = 0; h < height; h++) {
-            for (int w = 0; w < width; w++) {
-                for (int c = 0; c < channels; c++) {
-                    int pixelIndex = (h * width + w) * channels + c;
-                    int arrayIndex = h * width * channels + w * channels + c;
-
-                    // Normalize: (pixel / 255.0 - 0.5) / 0.5 = (pixel - 127.5) / 127.5
-                    float pixelValue = (data[pixelIndex] & 0xFF); // Convert to unsigned
-                    array[arrayIndex] = (pixelValue - 127.5f) / 127.5f;
+    private float[][] runInference(List<Mat> faces) throws OrtException {
+        int batchSize = faces.size();
+        float[][] embeddings = new float[batchSize][];
+
+        // Run inference on a pooled session
+        OrtSession session = pool.acquire();
+        try {
+            TensorInputBuffer input = inputBuffers.computeIfAbsent(session,
+                    s -> new TensorInputBuffer(env, INPUT_SIZE, INPUT_SIZE, 3));
+
+            // [N, 112, 112, 3] tensor in HWC format over the session's buffer (owned by the buffer, not closed here)
+            OnnxTensor tensor = input.fill(faces);
+
+            try (OrtSession.Result results = session.run(Map.of(inputName, tensor))) {
+                // Extract embeddings (one row per face)
+                float[][] output = (float[][]) results.get(0).getValue();
+                for (int i = 0; i < batchSize; i++) {
+                    // Normalize embedding (L2 normalization)
+                    embeddings[i] = normalizeEmbedding(output[i]);
                 }
             }
+        } finally {
+            pool.release(session);
         }
 
-        return array;
+        return embeddings;
     }
 
     /**
@@ -195,17 +379,9 @@ public class ArcFaceRecognizer {
      * Typical threshold: 0.5 for same person
      */
     public static double cosineSimilarity(float[] embedding1, float[] embedding2) {
-        if (embedding1.length != embedding2.length) {
-            throw new IllegalArgumentException("Embeddings must have same length");
-        }
-
-        double dotProduct = 0;
-        for (int i = 0; i < embedding1.length; i++) {
-            dotProduct += embedding1[i] * embedding2[i];
-        }
-
         // Since embeddings are already normalized, dot product = cosine similarity
-        return dotProduct;
+        // VectorMath uses SIMD when the Vector API is available, scalar otherwise
+        return VectorMath.dot(embedding1, embedding2);
     }
 
     /**
@@ -244,15 +420,62 @@ public class ArcFaceRecognizer {
     }
 
     /**
-     * Close ONNX session and release resources
+     * Find best match in a contiguous embedding gallery
+     * Same threshold semantics as the map-based overload, but scans one packed buffer.
+     * @param queryEmbedding Embedding to match
+     * @param gallery Enrolled embeddings
+     * @param threshold Minimum similarity threshold (default 0.5)
+     * @return Best match, or null if no match above threshold
+     */
+    public MatchResult findBestMatch(float[] queryEmbedding, EmbeddingGallery gallery, double threshold) {
+        return gallery.findBestMatch(queryEmbedding, threshold);
+    }
+
+    /**
+     * Two-stage match: compare against one centroid per student, then re-rank the top K
+     * candidates against their full embedding sets. Cuts comparisons roughly by the number
+     * of embeddings per student (~15) for large sections, with the same threshold semantics.
+     * @param queryEmbedding Embedding to match
+     * @param gallery Enrolled embeddings
+     * @param threshold Minimum similarity threshold (default 0.5)
+     * @param topK Number of candidate students to re-rank
+     * @return Best match, or null if no match above threshold
+     */
+    public MatchResult findBestMatch(float[] queryEmbedding, EmbeddingGallery gallery, double threshold, int topK) {
+        return gallery.findBestMatch(queryEmbedding, threshold, topK);
+    }
+
+    /**
+     * Find best match in an int8-quantized gallery
+     * Uses a quarter of the memory of {@link EmbeddingGallery}; see QuantizationReport for the accuracy cost.
+     * @param queryEmbedding Embedding to match (float32)
+     * @param gallery Quantized enrolled embeddings
+     * @param threshold Minimum similarity threshold (default 0.5)
+     * @return Best match, or null if no match above threshold
+     */
+    public MatchResult findBestMatch(float[] queryEmbedding, QuantizedEmbeddingGallery gallery, double threshold) {
+        return gallery.findBestMatch(queryEmbedding, threshold);
+    }
+
+    /**
+     * Find best match in an approximate nearest-neighbour index
+     * For campus-wide galleries where a linear scan is too slow; recall is tuned via the index's efSearch.
+     * @param queryEmbedding Embedding to match
+     * @param index HNSW index over enrolled embeddings
+     * @param threshold Minimum similarity threshold (default 0.5)
+     * @return Best match, or null if no match above threshold
+     */
+    public MatchResult findBestMatch(float[] queryEmbedding, HnswIndex index, double threshold) {
+        return index.findBestMatch(queryEmbedding, threshold);
+    }
+
+    /**
+     * Close ONNX sessions and release resources
+     * Sessions still running inference, and their input buffers, are closed when they are released.
      */
     public void close() {
-        if (session != null) {
-            try {
-                session.close();
-            } catch (OrtException e) {
-                System.err.println("Error closing ONNX session: " + e.getMessage());
-            }
+        if (pool != null) {
+            pool.close();
         }
     }
 
@@ -0,0 +1,38 @@
+package com.cs102.recognition;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+
+/**
+ * Frame source backed by an already configured OpenCV camera
+ */
+public class CameraFrameSource implements FrameSource {
+
+    private final VideoCapture camera;
+    private final String name;
+
+    public CameraFrameSource(VideoCapture camera, String name) {
+        this.camera = camera;
+        this.name = name;
+    }
+
+    @Override
+    public boolean read(Mat frame) {
+        return camera.read(frame) && !frame.empty();
+    }
+
+    @Override
+    public boolean isOpened() {
+        return camera.isOpened();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() {
+        camera.release();
+    }
+}
@@ -0,0 +1,370 @@
+package com.cs102.recognition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Enrolled face embeddings packed into one contiguous float array
+ * Row i occupies vectors[i * dimension .. (i + 1) * dimension) and belongs to owners[i],
+ * so matching is a single linear scan over one buffer instead of a walk over per-student arrays.
+ * Each student's rows are kept contiguous and summarised by an L2-normalised centroid, which
+ * allows a two-stage match: rank students by centroid, then re-rank the top K by their full sets.
+ * Thread-safe: matching takes a read lock, add/remove take a write lock.
+ */
+public class EmbeddingGallery {
+
+    private static final int INITIAL_CAPACITY = 64; // Rows
+
+    private final int dimension;
+    private float[] vectors;
+    private int[] owners;
+    private int size; // Number of rows in use
+
+    // Owner index -> userId (null once removed) and the reverse lookup; freed indexes are reused
+    private final List<String> ownerIds = new ArrayList<>();
+    private final Map<String, Integer> ownerIndexes = new HashMap<>();
+    private final Deque<Integer> freeOwners = new ArrayDeque<>();
+
+    // Per owner: first row, row count and L2-normalised centroid (owner * dimension)
+    private int[] ownerStarts = new int[INITIAL_CAPACITY];
+    private int[] ownerCounts = new int[INITIAL_CAPACITY];
+    private float[] centroids;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public EmbeddingGallery(int dimension) {
+        this.dimension = dimension;
+        this.vectors = new float[INITIAL_CAPACITY * dimension];
+        this.owners = new int[INITIAL_CAPACITY];
+        this.centroids = new float[INITIAL_CAPACITY * dimension];
+    }
+
+    /**
+     * Build a gallery from the per-student map used by the live recognition loaders
+     */
+    public static EmbeddingGallery fromMap(Map<String, float[][]> embeddingsByUser) {
+        int dimension = ArcFaceRecognizer.EMBEDDING_SIZE;
+        for (float[][] embeddings : embeddingsByUser.values()) {
+            if (embeddings.length > 0) {
+                dimension = embeddings[0].length;
+                break;
+            }
+        }
+
+        EmbeddingGallery gallery = new EmbeddingGallery(dimension);
+        for (Map.Entry<String, float[][]> entry : embeddingsByUser.entrySet()) {
+            gallery.add(entry.getKey(), entry.getValue());
+        }
+        return gallery;
+    }
+
+    /**
+     * Append embeddings for a student
+     * If the student already has embeddings the new ones are added alongside them.
+     */
+    public void add(String userId, float[][] embeddings) {
+        for (float[] embedding : embeddings) {
+            if (embedding.length != dimension) {
+                throw new IllegalArgumentException("Expected embedding of length " + dimension
+                        + " but got " + embedding.length);
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Keep each student's rows contiguous: move existing rows to the end with the new ones
+            float[][] existing = removeRows(userId);
+            float[][] combined = embeddings;
+            if (existing.length > 0) {
+                combined = Arrays.copyOf(existing, existing.length + embeddings.length);
+                System.arraycopy(embeddings, 0, combined, existing.length, embeddings.length);
+            }
+
+            int owner = ownerIndexes.computeIfAbsent(userId, this::allocateOwner);
+            ensureOwnerCapacity(owner + 1);
+
+            ensureCapacity(size + combined.length);
+            ownerStarts[owner] = size;
+            ownerCounts[owner] = combined.length;
+            for (float[] embedding : combined) {
+                System.arraycopy(embedding, 0, vectors, size * dimension, dimension);
+                owners[size] = owner;
+                size++;
+            }
+            updateCentroid(owner);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every embedding belonging to a student
+     * Remaining rows are compacted so the buffer stays dense.
+     * @return true if the student was in the gallery
+     */
+    public boolean remove(String userId) {
+        lock.writeLock().lock();
+        try {
+            if (!ownerIndexes.containsKey(userId)) {
+                return false;
+            }
+            removeRows(userId);
+            int owner = ownerIndexes.remove(userId);
+            ownerIds.set(owner, null);
+            freeOwners.push(owner);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cut a student's contiguous rows out of the buffer
+     * The owner index stays registered; callers decide whether to drop it.
+     * @return The removed embeddings (empty if the student had none)
+     */
+    private float[][] removeRows(String userId) {
+        Integer owner = ownerIndexes.get(userId);
+        if (owner == null || ownerCounts[owner] == 0) {
+            return new float[0][];
+        }
+
+        int start = ownerStarts[owner];
+        int count = ownerCounts[owner];
+        float[][] removed = new float[count][];
+        for (int i = 0; i < count; i++) {
+            removed[i] = Arrays.copyOfRange(vectors, (start + i) * dimension, (start + i + 1) * dimension);
+        }
+
+        int tail = size - (start + count);
+        System.arraycopy(vectors, (start + count) * dimension, vectors, start * dimension, tail * dimension);
+        System.arraycopy(owners, start + count, owners, start, tail);
+        size -= count;
+
+        ownerCounts[owner] = 0;
+        for (int other = 0; other < ownerIds.size(); other++) {
+            if (ownerCounts[other] > 0 && ownerStarts[other] > start) {
+                ownerStarts[other] -= count;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Replace a student's embeddings, e.g. after they re-register their face
+     */
+    public void replace(String userId, float[][] embeddings) {
+        lock.writeLock().lock();
+        try {
+            remove(userId);
+            add(userId, embeddings);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Owner index for a new student, reusing one freed by {@link #remove(String)} when available
+     */
+    private int allocateOwner(String userId) {
+        Integer free = freeOwners.poll();
+        if (free != null) {
+            ownerIds.set(free, userId);
+            return free;
+        }
+        ownerIds.add(userId);
+        return ownerIds.size() - 1;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= owners.length) {
+            return;
+        }
+        int newCapacity = Math.max(rows, owners.length * 2);
+        vectors = Arrays.copyOf(vectors, newCapacity * dimension);
+        owners = Arrays.copyOf(owners, newCapacity);
+    }
+
+    private void ensureOwnerCapacity(int ownerCount) {
+        if (ownerCount <= ownerStarts.length) {
+            return;
+        }
+        int newCapacity = Math.max(ownerCount, ownerStarts.length * 2);
+        ownerStarts = Arrays.copyOf(ownerStarts, newCapacity);
+        ownerCounts = Arrays.copyOf(ownerCounts, newCapacity);
+        centroids = Arrays.copyOf(centroids, newCapacity * dimension);
+    }
+
+    /**
+     * Recompute a student's centroid as the L2-normalised mean of their rows
+     */
+    private void updateCentroid(int owner) {
+        int base = owner * dimension;
+        Arrays.fill(centroids, base, base + dimension, 0f);
+
+        int start = ownerStarts[owner];
+        for (int row = start; row < start + ownerCounts[owner]; row++) {
+            int offset = row * dimension;
+            for (int i = 0; i < dimension; i++) {
+                centroids[base + i] += vectors[offset + i];
+            }
+        }
+
+        double norm = Math.sqrt(VectorMath.dot(centroids, base, centroids, base, dimension));
+        if (norm > 0) {
+            for (int i = 0; i < dimension; i++) {
+                centroids[base + i] /= norm;
+            }
+        }
+    }
+
+    /**
+     * Find the enrolled embedding most similar to the query
+     * @param queryEmbedding L2-normalised query embedding
+     * @param threshold Minimum similarity; matches must be strictly above it
+     * @return Best match above threshold, or null
+     */
+    public ArcFaceRecognizer.MatchResult findBestMatch(float[] queryEmbedding, double threshold) {
+        lock.readLock().lock();
+        try {
+            int bestRow = -1;
+            double bestSimilarity = threshold;
+
+            for (int row = 0; row < size; row++) {
+                double similarity = VectorMath.dot(queryEmbedding, 0, vectors, row * dimension, dimension);
+                if (similarity > bestSimilarity) {
+                    bestSimilarity = similarity;
+                    bestRow = row;
+                }
+            }
+
+            if (bestRow >= 0) {
+                return new ArcFaceRecognizer.MatchResult(ownerIds.get(owners[bestRow]), bestSimilarity);
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Two-stage match: rank students by centroid, then re-rank the top K against their full sets
+     * The returned similarity is always against an individual embedding, so the threshold means the
+     * same as in {@link #findBestMatch(float[], double)}; only students outside the top K by centroid
+     * can be missed. Falls back to the full scan when the gallery has no more than K students.
+     * @param queryEmbedding L2-normalised query embedding
+     * @param threshold Minimum similarity; matches must be strictly above it
+     * @param topK Number of candidate students to re-rank
+     * @return Best match above threshold, or null
+     */
+    public ArcFaceRecognizer.MatchResult findBestMatch(float[] queryEmbedding, double threshold, int topK) {
+        lock.readLock().lock();
+        try {
+            if (topK <= 0 || ownerIndexes.size() <= topK) {
+                return findBestMatch(queryEmbedding, threshold);
+            }
+
+            // Stage 1: keep the K best centroids (unordered, worst tracked for replacement)
+            int[] candidates = new int[topK];
+            double[] candidateSimilarities = new double[topK];
+            int candidateCount = 0;
+            int worst = 0;
+
+            for (int owner = 0; owner < ownerIds.size(); owner++) {
+                if (ownerCounts[owner] == 0) {
+                    continue;
+                }
+                double similarity = VectorMath.dot(queryEmbedding, 0, centroids, owner * dimension, dimension);
+                if (candidateCount < topK) {
+                    candidates[candidateCount] = owner;
+                    candidateSimilarities[candidateCount] = similarity;
+                    candidateCount++;
+                    if (candidateCount == topK) {
+                        worst = indexOfMin(candidateSimilarities);
+                    }
+                } else if (similarity > candidateSimilarities[worst]) {
+                    candidates[worst] = owner;
+                    candidateSimilarities[worst] = similarity;
+                    worst = indexOfMin(candidateSimilarities);
+                }
+            }
+
+            // Stage 2: exact comparison against every embedding of the candidates
+            int bestRow = -1;
+            double bestSimilarity = threshold;
+            for (int i = 0; i < candidateCount; i++) {
+                int start = ownerStarts[candidates[i]];
+                int end = start + ownerCounts[candidates[i]];
+                for (int row = start; row < end; row++) {
+                    double similarity = VectorMath.dot(queryEmbedding, 0, vectors, row * dimension, dimension);
+                    if (similarity > bestSimilarity) {
+                        bestSimilarity = similarity;
+                        bestRow = row;
+                    }
+                }
+            }
+
+            if (bestRow >= 0) {
+                return new ArcFaceRecognizer.MatchResult(ownerIds.get(owners[bestRow]), bestSimilarity);
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int indexOfMin(double[] values) {
+        int min = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] < values[min]) {
+                min = i;
+            }
+        }
+        return min;
+    }
+
+    // ========== Accessors ==========
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Total number of stored embeddings
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of students with at least one embedding
+     */
+    public int getUserCount() {
+        lock.readLock().lock();
+        try {
+            return ownerIndexes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String userId) {
+        lock.readLock().lock();
+        try {
+            return ownerIndexes.containsKey(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
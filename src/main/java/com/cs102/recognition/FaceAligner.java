@@ -0,0 +1,71 @@
+package com.cs102.recognition;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Aligns faces to the canonical ArcFace 112x112 template using YuNet's 5 landmarks
+ * A similarity transform (rotation, uniform scale, translation) maps the eyes, nose tip and
+ * mouth corners onto the positions ArcFace was trained with, so tilted or off-centre faces give
+ * the same embedding as frontal ones and the match similarity is higher. Areas outside the frame
+ * are padded with black instead of shrinking the crop.
+ */
+public class FaceAligner {
+
+    public static final int ALIGNED_SIZE = 112;
+
+    // ArcFace reference landmarks for a 112x112 face (insightface), in YuNet's order:
+    // right eye, left eye, nose tip, right mouth corner, left mouth corner
+    private static final Point[] ARCFACE_TEMPLATE = {
+            new Point(38.2946, 51.6963),
+            new Point(73.5318, 51.5014),
+            new Point(56.0252, 71.7366),
+            new Point(41.5493, 92.3655),
+            new Point(70.7299, 92.2041)
+    };
+
+    private FaceAligner() {
+    }
+
+    /**
+     * Warp a face to the ArcFace template
+     * @param frame Full frame (BGR)
+     * @param landmarks 10 values: x, y of the 5 YuNet landmarks in frame coordinates
+     * @return Aligned 112x112 face (same channels as the frame), or null if no transform could be estimated
+     */
+    public static Mat align(Mat frame, float[] landmarks) {
+        if (landmarks == null || landmarks.length < 10) {
+            return null;
+        }
+
+        Point[] points = new Point[5];
+        for (int i = 0; i < 5; i++) {
+            points[i] = new Point(landmarks[2 * i], landmarks[2 * i + 1]);
+        }
+
+        MatOfPoint2f source = new MatOfPoint2f(points);
+        MatOfPoint2f target = new MatOfPoint2f(ARCFACE_TEMPLATE);
+        Mat inliers = new Mat();
+        Mat transform = Calib3d.estimateAffinePartial2D(source, target, inliers, Calib3d.LMEDS);
+        source.release();
+        target.release();
+        inliers.release();
+
+        if (transform.empty()) {
+            transform.release();
+            return null;
+        }
+
+        Mat aligned = new Mat();
+        Imgproc.warpAffine(frame, aligned, transform, new Size(ALIGNED_SIZE, ALIGNED_SIZE),
+                Imgproc.INTER_LINEAR, Core.BORDER_CONSTANT, new Scalar(0, 0, 0));
+        transform.release();
+        return aligned;
+    }
+}
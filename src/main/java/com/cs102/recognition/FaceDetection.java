@@ -0,0 +1,76 @@
+package com.cs102.recognition;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One YuNet face detection: bounding box, 5 landmarks and confidence score
+ */
+public class FaceDetection {
+
+    public final Rect box;
+    public final float[] landmarks; // x, y of right eye, left eye, nose tip, right and left mouth corner
+    public final float score;
+
+    public FaceDetection(Rect box, float[] landmarks, float score) {
+        this.box = box;
+        this.landmarks = landmarks;
+        this.score = score;
+    }
+
+    /**
+     * Parse the output of FaceDetectorYN.detect (one row of 15 floats per face)
+     */
+    public static List<FaceDetection> fromYuNet(Mat faces) {
+        List<FaceDetection> detections = new ArrayList<>();
+        float[] row = new float[15];
+        for (int i = 0; i < faces.rows(); i++) {
+            faces.get(i, 0, row);
+            Rect box = new Rect((int) row[0], (int) row[1], (int) row[2], (int) row[3]);
+            float[] landmarks = new float[10];
+            System.arraycopy(row, 4, landmarks, 0, 10);
+            detections.add(new FaceDetection(box, landmarks, row[14]));
+        }
+        return detections;
+    }
+
+    /**
+     * Same detection in a frame scaled by the given factor (e.g. back to full resolution)
+     */
+    public FaceDetection scale(double factor) {
+        Rect scaledBox = new Rect((int) Math.round(box.x * factor), (int) Math.round(box.y * factor),
+                (int) Math.round(box.width * factor), (int) Math.round(box.height * factor));
+        float[] scaledLandmarks = new float[landmarks.length];
+        for (int i = 0; i < landmarks.length; i++) {
+            scaledLandmarks[i] = (float) (landmarks[i] * factor);
+        }
+        return new FaceDetection(scaledBox, scaledLandmarks, score);
+    }
+
+    /**
+     * Largest detection by box area (null if there are none)
+     */
+    public static FaceDetection largest(List<FaceDetection> detections) {
+        FaceDetection largest = null;
+        for (FaceDetection detection : detections) {
+            if (largest == null || detection.box.area() > largest.box.area()) {
+                largest = detection;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Intersection of two rectangles (empty if they do not overlap)
+     */
+    public static Rect intersect(Rect a, Rect b) {
+        int x1 = Math.max(a.x, b.x);
+        int y1 = Math.max(a.y, b.y);
+        int x2 = Math.min(a.x + a.width, b.x + b.width);
+        int y2 = Math.min(a.y + a.height, b.y + b.height);
+        return new Rect(x1, y1, Math.max(0, x2 - x1), Math.max(0, y2 - y1));
+    }
+}
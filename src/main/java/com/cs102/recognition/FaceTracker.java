@@ -0,0 +1,347 @@
+package com.cs102.recognition;
+
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * SORT-style face tracker that carries identities across frames
+ *
+ * Each detection is associated with an existing track by IoU (greedy, best overlap first), so a
+ * student sitting still keeps the same track and identity from frame to frame. ArcFace only needs
+ * to run for tracks that are new, not yet confirmed, or due for periodic re-verification, which in
+ * a seated class is a small fraction of the detected faces.
+ *
+ * Optionally each track's box is smoothed by a constant-velocity Kalman filter (one per box
+ * coordinate); association then uses the predicted box, which keeps tracks locked onto faces that
+ * move between detections.
+ *
+ * All methods are synchronized: the pipeline updates tracks on the detect stage and applies
+ * matches on the match stage.
+ */
+public class FaceTracker {
+
+    private static final double DEFAULT_IOU_THRESHOLD = 0.3;     // Minimum overlap to continue a track
+    private static final int DEFAULT_MAX_MISSED = 5;              // Detections a track survives without a face
+    private static final int DEFAULT_CONFIRM_HITS = 2;            // Consistent matches before skipping ArcFace
+    private static final long DEFAULT_REVERIFY_MILLIS = 3000;     // Re-embed confirmed tracks this often
+    private static final long EMBEDDING_TIMEOUT_MILLIS = 2000;    // Give up on an embedding lost in the pipeline
+
+    /**
+     * One tracked face
+     */
+    public static class Track {
+        private final long id;
+        private Rect box;
+        private FaceDetection detection;
+        private final KalmanAxis[] filters; // cx, cy, w, h; null without smoothing
+        private int missed;
+
+        private ArcFaceRecognizer.MatchResult identity;
+        private int confirmations;
+        private long lastEmbeddingMillis;
+        private long embeddingRequestedMillis; // 0 when no embedding is in flight
+
+        private Track(long id, FaceDetection detection, boolean smoothing) {
+            this.id = id;
+            this.detection = detection;
+            this.box = detection.box;
+            if (smoothing) {
+                Rect b = detection.box;
+                filters = new KalmanAxis[] {
+                        new KalmanAxis(b.x + b.width / 2.0), new KalmanAxis(b.y + b.height / 2.0),
+                        new KalmanAxis(b.width), new KalmanAxis(b.height) };
+            } else {
+                filters = null;
+            }
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Detection associated with this track in the latest update (detect stage only)
+         */
+        FaceDetection getDetection() {
+            return detection;
+        }
+
+        private Rect predict() {
+            if (filters == null) {
+                return box;
+            }
+            for (KalmanAxis filter : filters) {
+                filter.predict();
+            }
+            return toRect(filters);
+        }
+
+        private void correct(FaceDetection detection) {
+            this.detection = detection;
+            this.missed = 0;
+            if (filters == null) {
+                box = detection.box;
+                return;
+            }
+            Rect b = detection.box;
+            filters[0].correct(b.x + b.width / 2.0);
+            filters[1].correct(b.y + b.height / 2.0);
+            filters[2].correct(b.width);
+            filters[3].correct(b.height);
+            box = toRect(filters);
+        }
+
+        private static Rect toRect(KalmanAxis[] filters) {
+            double w = Math.max(1, filters[2].position);
+            double h = Math.max(1, filters[3].position);
+            return new Rect((int) Math.round(filters[0].position - w / 2), (int) Math.round(filters[1].position - h / 2),
+                    (int) Math.round(w), (int) Math.round(h));
+        }
+    }
+
+    /**
+     * Constant-velocity Kalman filter for one coordinate (state: position, velocity per detection)
+     */
+    private static class KalmanAxis {
+        private static final double PROCESS_NOISE_POSITION = 1.0;
+        private static final double PROCESS_NOISE_VELOCITY = 0.5;
+        private static final double MEASUREMENT_NOISE = 10.0;
+
+        double position;
+        double velocity;
+        double p00 = 10, p01, p10, p11 = 100; // Covariance
+
+        KalmanAxis(double position) {
+            this.position = position;
+        }
+
+        void predict() {
+            position += velocity;
+            // P = F P F' + Q with F = [[1, 1], [0, 1]]
+            double n00 = p00 + p01 + p10 + p11 + PROCESS_NOISE_POSITION;
+            double n01 = p01 + p11;
+            double n10 = p10 + p11;
+            double n11 = p11 + PROCESS_NOISE_VELOCITY;
+            p00 = n00;
+            p01 = n01;
+            p10 = n10;
+            p11 = n11;
+        }
+
+        void correct(double measured) {
+            double residual = measured - position;
+            double s = p00 + MEASUREMENT_NOISE;
+            double k0 = p00 / s;
+            double k1 = p10 / s;
+            position += k0 * residual;
+            velocity += k1 * residual;
+            double n00 = (1 - k0) * p00;
+            double n01 = (1 - k0) * p01;
+            double n10 = p10 - k1 * p00;
+            double n11 = p11 - k1 * p01;
+            p00 = n00;
+            p01 = n01;
+            p10 = n10;
+            p11 = n11;
+        }
+    }
+
+    private final List<Track> tracks = new ArrayList<>();
+    private long nextId = 1;
+
+    private double iouThreshold = DEFAULT_IOU_THRESHOLD;
+    private int maxMissed = DEFAULT_MAX_MISSED;
+    private int confirmHits = DEFAULT_CONFIRM_HITS;
+    private long reverifyMillis = DEFAULT_REVERIFY_MILLIS;
+    private boolean smoothing = true;
+
+    // Metrics
+    private long createdTracks;
+    private long lostTracks;
+
+    // ========== Configuration ==========
+
+    public synchronized void setIouThreshold(double iouThreshold) {
+        this.iouThreshold = iouThreshold;
+    }
+
+    public synchronized void setMaxMissed(int maxMissed) {
+        this.maxMissed = maxMissed;
+    }
+
+    public synchronized void setConfirmHits(int confirmHits) {
+        this.confirmHits = Math.max(1, confirmHits);
+    }
+
+    public synchronized void setReverifyMillis(long reverifyMillis) {
+        this.reverifyMillis = reverifyMillis;
+    }
+
+    /**
+     * Enable Kalman smoothing for tracks created from now on (default on)
+     */
+    public synchronized void setSmoothing(boolean smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    // ========== Tracking ==========
+
+    /**
+     * Associate a frame's detections with tracks
+     * Unmatched detections start new tracks; tracks without a detection for more than
+     * maxMissed updates are dropped.
+     * @return Tracks seen in this frame, one per detection
+     */
+    public synchronized List<Track> update(List<FaceDetection> detections) {
+        // Predict where every track should be now
+        List<Rect> predicted = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            predicted.add(track.predict());
+        }
+
+        // Greedy association, highest IoU first
+        List<double[]> candidates = new ArrayList<>(); // iou, track index, detection index
+        for (int t = 0; t < tracks.size(); t++) {
+            for (int d = 0; d < detections.size(); d++) {
+                double iou = iou(predicted.get(t), detections.get(d).box);
+                if (iou >= iouThreshold) {
+                    candidates.add(new double[] { iou, t, d });
+                }
+            }
+        }
+        candidates.sort((a, b) -> Double.compare(b[0], a[0]));
+
+        Track[] assigned = new Track[detections.size()];
+        boolean[] trackUsed = new boolean[tracks.size()];
+        for (double[] candidate : candidates) {
+            int t = (int) candidate[1];
+            int d = (int) candidate[2];
+            if (trackUsed[t] || assigned[d] != null) {
+                continue;
+            }
+            trackUsed[t] = true;
+            assigned[d] = tracks.get(t);
+            assigned[d].correct(detections.get(d));
+        }
+
+        // Age out tracks that were not seen
+        for (int t = 0; t < trackUsed.length; t++) {
+            if (!trackUsed[t]) {
+                tracks.get(t).missed++;
+            }
+        }
+        Iterator<Track> iterator = tracks.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().missed > maxMissed) {
+                iterator.remove();
+                lostTracks++;
+            }
+        }
+
+        // New tracks for unmatched detections
+        List<Track> result = new ArrayList<>(detections.size());
+        for (int d = 0; d < detections.size(); d++) {
+            if (assigned[d] == null) {
+                assigned[d] = new Track(nextId++, detections.get(d), smoothing);
+                tracks.add(assigned[d]);
+                createdTracks++;
+            }
+            result.add(assigned[d]);
+        }
+        return result;
+    }
+
+    /**
+     * Pick the tracks that need ArcFace (new, unconfirmed or due for re-verification)
+     * and mark their embedding as in flight so later frames do not request it again.
+     */
+    public synchronized List<Track> claimForEmbedding(List<Track> frameTracks) {
+        long now = System.currentTimeMillis();
+        List<Track> claimed = new ArrayList<>();
+        for (Track track : frameTracks) {
+            boolean inFlight = track.embeddingRequestedMillis != 0
+                    && now - track.embeddingRequestedMillis < EMBEDDING_TIMEOUT_MILLIS;
+            if (inFlight) {
+                continue;
+            }
+            boolean confirmed = track.confirmations >= confirmHits;
+            boolean due = now - track.lastEmbeddingMillis >= reverifyMillis;
+            if (!confirmed || due) {
+                track.embeddingRequestedMillis = now;
+                claimed.add(track);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Record a fresh match for a track
+     * The same student twice in a row counts towards confirmation; a different student or no
+     * match restarts it.
+     */
+    public synchronized void applyMatch(Track track, ArcFaceRecognizer.MatchResult match) {
+        track.embeddingRequestedMillis = 0;
+        track.lastEmbeddingMillis = System.currentTimeMillis();
+
+        if (match == null) {
+            track.identity = null;
+            track.confirmations = 0;
+        } else if (track.identity != null && track.identity.userId.equals(match.userId)) {
+            track.identity = match;
+            track.confirmations++;
+        } else {
+            track.identity = match;
+            track.confirmations = 1;
+        }
+    }
+
+    /**
+     * Identity currently carried by a track (null if unknown)
+     */
+    public synchronized ArcFaceRecognizer.MatchResult getIdentity(Track track) {
+        return track.identity;
+    }
+
+    /**
+     * Current box of a track, Kalman smoothed if enabled
+     */
+    public synchronized Rect getBox(Track track) {
+        return track.box;
+    }
+
+    public synchronized boolean isConfirmed(Track track) {
+        return track.confirmations >= confirmHits;
+    }
+
+    public synchronized int getActiveTracks() {
+        return tracks.size();
+    }
+
+    public synchronized long getCreatedTracks() {
+        return createdTracks;
+    }
+
+    public synchronized long getLostTracks() {
+        return lostTracks;
+    }
+
+    /**
+     * Drop all tracks (e.g. when the camera restarts)
+     */
+    public synchronized void clear() {
+        tracks.clear();
+    }
+
+    /**
+     * Intersection over union of two boxes
+     */
+    public static double iou(Rect a, Rect b) {
+        Rect overlap = FaceDetection.intersect(a, b);
+        double intersection = (double) overlap.width * overlap.height;
+        double union = a.area() + b.area() - intersection;
+        return union <= 0 ? 0.0 : intersection / union;
+    }
+}
@@ -0,0 +1,37 @@
+package com.cs102.recognition;
+
+import org.opencv.core.Mat;
+
+/**
+ * Source of BGR frames for the recognition pipeline
+ */
+public interface FrameSource extends AutoCloseable {
+
+    /**
+     * Read the next frame
+     * @param frame Destination, reused between calls
+     * @return true if a frame was read; false on a transient failure or at the end of the source
+     */
+    boolean read(Mat frame);
+
+    /**
+     * Whether more frames can be read (false once a file or directory is exhausted)
+     */
+    boolean isOpened();
+
+    /**
+     * Short name for logs, e.g. "camera 0"
+     */
+    String getName();
+
+    /**
+     * Whether frames arrive in real time (cameras, recordings replayed at their frame rate)
+     * Unpaced sources are read on demand, one frame per detection, so every frame is analysed.
+     */
+    default boolean isPaced() {
+        return true;
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,680 @@
+package com.cs102.recognition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical Navigable Small World (HNSW) index over face embeddings
+ * Approximate nearest-neighbour search for galleries too large for a brute-force scan,
+ * e.g. a kiosk that recognises anyone on campus. Similarity is the dot product of
+ * L2-normalised embeddings, matching {@link ArcFaceRecognizer#cosineSimilarity}.
+ *
+ * Knobs:
+ *   m              - links per node (higher = better recall, more memory, slower build)
+ *   efConstruction - candidate list size while building (higher = better graph, slower build)
+ *   efSearch       - candidate list size while searching (higher = better recall, slower search)
+ *
+ * The index can be saved to and loaded from a local file so it is not rebuilt on every launch.
+ * Removing a student tombstones their nodes; they are skipped by search and dropped on rebuild.
+ */
+public class HnswIndex {
+
+    private static final int FILE_MAGIC = 0x484E5357; // "HNSW"
+    private static final int FILE_VERSION = 2;
+    private static final int INITIAL_CAPACITY = 256; // Nodes
+
+    private final int dimension;
+    private final int m;
+    private final int maxLinksLevel0;
+    private final int efConstruction;
+    private volatile int efSearch;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    // Node storage: vectors packed contiguously, parallel owner and level arrays
+    private float[] vectors;
+    private int[] nodeOwners;
+    private int[] nodeLevels;
+    // links[node][level] = {count, neighbour1, neighbour2, ...}
+    private int[][][] links;
+    private int count;
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    // Owner index -> userId and the reverse lookup; removed owners are tombstoned
+    private final List<String> ownerIds = new ArrayList<>();
+    private final Map<String, Integer> ownerIndexes = new HashMap<>();
+    private final BitSet deletedOwners = new BitSet();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Create an empty index
+     * @param dimension Embedding length (512 for ArcFace)
+     * @param m Links per node on upper levels (level 0 uses 2 * m); typical 12-32
+     * @param efConstruction Candidate list size while inserting; typical 100-400
+     * @param efSearch Candidate list size while searching; typical 50-200
+     */
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch) {
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxLinksLevel0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = Math.max(1, efSearch);
+        this.levelMultiplier = 1.0 / Math.log(m);
+
+        this.vectors = new float[INITIAL_CAPACITY * dimension];
+        this.nodeOwners = new int[INITIAL_CAPACITY];
+        this.nodeLevels = new int[INITIAL_CAPACITY];
+        this.links = new int[INITIAL_CAPACITY][][];
+    }
+
+    /**
+     * Build an index from the per-student embedding map used by the recognition loaders
+     */
+    public static HnswIndex build(Map<String, float[][]> embeddingsByUser, int m, int efConstruction, int efSearch) {
+        HnswIndex index = new HnswIndex(ArcFaceRecognizer.EMBEDDING_SIZE, m, efConstruction, efSearch);
+        for (Map.Entry<String, float[][]> entry : embeddingsByUser.entrySet()) {
+            index.addAll(entry.getKey(), entry.getValue());
+        }
+        return index;
+    }
+
+    // ========== Insertion ==========
+
+    /**
+     * Add all embeddings of one student
+     */
+    public void addAll(String userId, float[][] embeddings) {
+        for (float[] embedding : embeddings) {
+            add(userId, embedding);
+        }
+    }
+
+    /**
+     * Insert one embedding
+     */
+    public void add(String userId, float[] embedding) {
+        if (embedding.length != dimension) {
+            throw new IllegalArgumentException("Expected embedding of length " + dimension
+                    + " but got " + embedding.length);
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer existingOwner = ownerIndexes.get(userId);
+            int owner;
+            if (existingOwner != null) {
+                owner = existingOwner;
+            } else {
+                ownerIds.add(userId);
+                owner = ownerIds.size() - 1;
+                ownerIndexes.put(userId, owner);
+            }
+
+            int node = allocateNode(embedding, owner);
+            int level = nodeLevels[node];
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            // Greedy descent through levels above the new node's top level
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(vectors, node * dimension, current, l);
+            }
+
+            // Connect on every level the node lives on
+            List<Candidate> entryPoints = new ArrayList<>();
+            entryPoints.add(new Candidate(current, similarity(node, current)));
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(vectors, node * dimension, entryPoints, efConstruction, l, false);
+                List<Candidate> selected = selectNeighbours(candidates, maxLinks(l));
+
+                for (Candidate neighbour : selected) {
+                    appendLink(node, l, neighbour.node);
+                    connectBack(neighbour.node, node, l);
+                }
+                entryPoints = candidates;
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int allocateNode(float[] embedding, int owner) {
+        if (count == nodeOwners.length) {
+            int newCapacity = nodeOwners.length * 2;
+            vectors = Arrays.copyOf(vectors, newCapacity * dimension);
+            nodeOwners = Arrays.copyOf(nodeOwners, newCapacity);
+            nodeLevels = Arrays.copyOf(nodeLevels, newCapacity);
+            links = Arrays.copyOf(links, newCapacity);
+        }
+
+        int node = count++;
+        System.arraycopy(embedding, 0, vectors, node * dimension, dimension);
+        nodeOwners[node] = owner;
+
+        int level = (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        nodeLevels[node] = level;
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+        return node;
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? maxLinksLevel0 : m;
+    }
+
+    private void appendLink(int node, int level, int neighbour) {
+        int[] nodeLinks = links[node][level];
+        nodeLinks[++nodeLinks[0]] = neighbour;
+    }
+
+    /**
+     * Add a reverse link, re-selecting the neighbour's links if it is already full
+     */
+    private void connectBack(int neighbour, int node, int level) {
+        int[] neighbourLinks = links[neighbour][level];
+        int limit = maxLinks(level);
+        if (neighbourLinks[0] < limit) {
+            neighbourLinks[++neighbourLinks[0]] = node;
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(neighbourLinks[0] + 1);
+        candidates.add(new Candidate(node, similarity(neighbour, node)));
+        for (int i = 1; i <= neighbourLinks[0]; i++) {
+            candidates.add(new Candidate(neighbourLinks[i], similarity(neighbour, neighbourLinks[i])));
+        }
+        candidates.sort(Candidate.MOST_SIMILAR_FIRST);
+
+        List<Candidate> selected = selectNeighbours(candidates, limit);
+        neighbourLinks[0] = selected.size();
+        for (int i = 0; i < selected.size(); i++) {
+            neighbourLinks[i + 1] = selected.get(i).node;
+        }
+    }
+
+    /**
+     * Neighbour selection heuristic from the HNSW paper
+     * A candidate is kept only if it is closer to the base node than to every neighbour already kept,
+     * which spreads links across clusters (each student's ~15 embeddings form a tight cluster).
+     * Remaining slots are filled with the closest discarded candidates.
+     * @param candidates Candidates sorted by descending similarity to the base node
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int limit) {
+        List<Candidate> selected = new ArrayList<>(limit);
+        List<Candidate> discarded = new ArrayList<>();
+
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate kept : selected) {
+                if (similarity(candidate.node, kept.node) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                discarded.add(candidate);
+            }
+        }
+
+        for (int i = 0; i < discarded.size() && selected.size() < limit; i++) {
+            selected.add(discarded.get(i));
+        }
+        return selected;
+    }
+
+    // ========== Search ==========
+
+    /**
+     * Walk greedily towards the query on one level
+     */
+    private int greedyClosest(float[] query, int queryOffset, int start, int level) {
+        int current = start;
+        double currentSimilarity = VectorMath.dot(query, queryOffset, vectors, current * dimension, dimension);
+
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] currentLinks = links[current][level];
+            for (int i = 1; i <= currentLinks[0]; i++) {
+                int neighbour = currentLinks[i];
+                double similarity = VectorMath.dot(query, queryOffset, vectors, neighbour * dimension, dimension);
+                if (similarity > currentSimilarity) {
+                    currentSimilarity = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one level
+     * With skipDeleted, tombstoned nodes are still walked through but never enter the result
+     * list, so the search keeps expanding until it has ef live nodes or runs out of candidates.
+     * @return Up to ef nodes, sorted by descending similarity to the query
+     */
+    private List<Candidate> searchLayer(float[] query, int queryOffset, List<Candidate> entryPoints,
+                                        int ef, int level, boolean skipDeleted) {
+        BitSet visited = new BitSet(count);
+        PriorityQueue<Candidate> toVisit = new PriorityQueue<>(Candidate.MOST_SIMILAR_FIRST);
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Candidate.LEAST_SIMILAR_FIRST);
+
+        for (Candidate entry : entryPoints) {
+            if (visited.get(entry.node)) {
+                continue;
+            }
+            visited.set(entry.node);
+            Candidate scored = new Candidate(entry.node,
+                    VectorMath.dot(query, queryOffset, vectors, entry.node * dimension, dimension));
+            toVisit.add(scored);
+            if (!skipDeleted || !isDeleted(entry.node)) {
+                best.add(scored);
+                if (best.size() > ef) {
+                    best.poll();
+                }
+            }
+        }
+
+        while (!toVisit.isEmpty()) {
+            Candidate current = toVisit.poll();
+            if (best.size() >= ef && current.similarity < best.peek().similarity) {
+                break;
+            }
+
+            int[] currentLinks = links[current.node][level];
+            for (int i = 1; i <= currentLinks[0]; i++) {
+                int neighbour = currentLinks[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+
+                double similarity = VectorMath.dot(query, queryOffset, vectors, neighbour * dimension, dimension);
+                if (best.size() < ef || similarity > best.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    toVisit.add(candidate);
+                    if (!skipDeleted || !isDeleted(neighbour)) {
+                        best.add(candidate);
+                        if (best.size() > ef) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(best);
+        result.sort(Candidate.MOST_SIMILAR_FIRST);
+        return result;
+    }
+
+    private boolean isDeleted(int node) {
+        return deletedOwners.get(nodeOwners[node]);
+    }
+
+    /**
+     * Find the best-matching student for a query embedding
+     * Same contract as {@link ArcFaceRecognizer#findBestMatch}: null unless similarity exceeds the threshold.
+     */
+    public ArcFaceRecognizer.MatchResult findBestMatch(float[] queryEmbedding, double threshold) {
+        List<ArcFaceRecognizer.MatchResult> results = search(queryEmbedding, 1);
+        if (!results.isEmpty() && results.get(0).similarity > threshold) {
+            return results.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * Approximate top-k distinct students for a query embedding
+     * @return Up to k matches, best first, one per student
+     */
+    public List<ArcFaceRecognizer.MatchResult> search(float[] queryEmbedding, int k) {
+        lock.readLock().lock();
+        try {
+            List<ArcFaceRecognizer.MatchResult> results = new ArrayList<>();
+            if (entryPoint < 0) {
+                return results;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(queryEmbedding, 0, current, l);
+            }
+
+            List<Candidate> entry = new ArrayList<>();
+            entry.add(new Candidate(current, 0));
+
+            // Each student owns several nodes: widen the beam until k students are found or the graph is exhausted
+            for (int ef = Math.max(efSearch, k); ; ef *= 2) {
+                List<Candidate> candidates = searchLayer(queryEmbedding, 0, entry, ef, 0, true);
+
+                // Collapse nodes to students, keeping each student's best similarity
+                results.clear();
+                BitSet seenOwners = new BitSet();
+                for (Candidate candidate : candidates) {
+                    int owner = nodeOwners[candidate.node];
+                    if (seenOwners.get(owner)) {
+                        continue;
+                    }
+                    seenOwners.set(owner);
+                    results.add(new ArcFaceRecognizer.MatchResult(ownerIds.get(owner), candidate.similarity));
+                    if (results.size() == k) {
+                        break;
+                    }
+                }
+                if (results.size() == k || candidates.size() < ef || ef >= count) {
+                    return results;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== Removal ==========
+
+    /**
+     * Tombstone every embedding of a student
+     * Tombstoned nodes still route searches but are never returned; call {@link #rebuild()} to drop them.
+     * @return true if the student was in the index
+     */
+    public boolean remove(String userId) {
+        lock.writeLock().lock();
+        try {
+            Integer owner = ownerIndexes.remove(userId);
+            if (owner == null) {
+                return false;
+            }
+            deletedOwners.set(owner);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace a student's embeddings, e.g. after they re-register their face
+     */
+    public void replace(String userId, float[][] embeddings) {
+        remove(userId);
+        addAll(userId, embeddings);
+    }
+
+    /**
+     * Build a fresh index without tombstoned nodes
+     */
+    public HnswIndex rebuild() {
+        lock.readLock().lock();
+        try {
+            HnswIndex rebuilt = new HnswIndex(dimension, m, efConstruction, efSearch);
+            float[] vector = new float[dimension];
+            for (int node = 0; node < count; node++) {
+                int owner = nodeOwners[node];
+                if (!deletedOwners.get(owner)) {
+                    System.arraycopy(vectors, node * dimension, vector, 0, dimension);
+                    rebuilt.add(ownerIds.get(owner), vector);
+                }
+            }
+            return rebuilt;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== Persistence ==========
+
+    /**
+     * Save the index to a local file
+     * The file is written to a temporary sibling first and moved into place, so a crash never
+     * leaves a half-written index behind.
+     * @param modelHash Hash of the ArcFace model that produced the embeddings
+     * @param fingerprint Identifies the set of stored embeddings the index was built from
+     */
+    public void save(Path file, String modelHash, String fingerprint) throws IOException {
+        lock.readLock().lock();
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path tempFile = Files.createTempFile(parent, "hnsw", ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(modelHash);
+                out.writeUTF(fingerprint);
+                out.writeInt(dimension);
+                out.writeInt(m);
+                out.writeInt(efConstruction);
+                out.writeInt(efSearch);
+                out.writeInt(count);
+                out.writeInt(entryPoint);
+                out.writeInt(maxLevel);
+
+                out.writeInt(ownerIds.size());
+                for (int owner = 0; owner < ownerIds.size(); owner++) {
+                    out.writeUTF(ownerIds.get(owner));
+                    out.writeBoolean(deletedOwners.get(owner));
+                }
+
+                for (int node = 0; node < count; node++) {
+                    out.writeInt(nodeOwners[node]);
+                    out.writeInt(nodeLevels[node]);
+                    for (int i = 0; i < dimension; i++) {
+                        out.writeFloat(vectors[node * dimension + i]);
+                    }
+                    for (int l = 0; l <= nodeLevels[node]; l++) {
+                        int[] nodeLinks = links[node][l];
+                        out.writeInt(nodeLinks[0]);
+                        for (int i = 1; i <= nodeLinks[0]; i++) {
+                            out.writeInt(nodeLinks[i]);
+                        }
+                    }
+                }
+            }
+
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Load an index saved with {@link #save(Path, String, String)}
+     * @param expectedModelHash Hash of the current ArcFace model
+     * @param expectedFingerprint Fingerprint of the embeddings currently stored
+     * @return The index, or null if the file is missing, unreadable, built with a different model
+     *         or built from different embeddings
+     */
+    public static HnswIndex load(Path file, String expectedModelHash, String expectedFingerprint) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                System.err.println("Ignoring HNSW index with unknown format: " + file);
+                return null;
+            }
+            String modelHash = in.readUTF();
+            if (!modelHash.equals(expectedModelHash)) {
+                System.out.println("HNSW index was built with a different ArcFace model, ignoring: " + file);
+                return null;
+            }
+            if (!in.readUTF().equals(expectedFingerprint)) {
+                System.out.println("HNSW index is out of date with the stored embeddings, ignoring: " + file);
+                return null;
+            }
+
+            int dimension = in.readInt();
+            int m = in.readInt();
+            int efConstruction = in.readInt();
+            int efSearch = in.readInt();
+            HnswIndex index = new HnswIndex(dimension, m, efConstruction, efSearch);
+
+            int count = in.readInt();
+            index.entryPoint = in.readInt();
+            index.maxLevel = in.readInt();
+
+            int ownerCount = in.readInt();
+            for (int owner = 0; owner < ownerCount; owner++) {
+                String userId = in.readUTF();
+                boolean deleted = in.readBoolean();
+                index.ownerIds.add(userId);
+                if (deleted) {
+                    index.deletedOwners.set(owner);
+                } else {
+                    index.ownerIndexes.put(userId, owner);
+                }
+            }
+
+            int capacity = Math.max(INITIAL_CAPACITY, count);
+            index.vectors = new float[capacity * dimension];
+            index.nodeOwners = new int[capacity];
+            index.nodeLevels = new int[capacity];
+            index.links = new int[capacity][][];
+
+            for (int node = 0; node < count; node++) {
+                index.nodeOwners[node] = in.readInt();
+                int level = in.readInt();
+                index.nodeLevels[node] = level;
+                for (int i = 0; i < dimension; i++) {
+                    index.vectors[node * dimension + i] = in.readFloat();
+                }
+                index.links[node] = new int[level + 1][];
+                for (int l = 0; l <= level; l++) {
+                    int[] nodeLinks = new int[index.maxLinks(l) + 1];
+                    nodeLinks[0] = in.readInt();
+                    for (int i = 1; i <= nodeLinks[0]; i++) {
+                        nodeLinks[i] = in.readInt();
+                    }
+                    index.links[node][l] = nodeLinks;
+                }
+            }
+            index.count = count;
+
+            return index;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to load HNSW index " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ========== Accessors ==========
+
+    /**
+     * Adjust the search candidate list size at runtime (recall vs latency)
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Number of stored embeddings, including tombstoned ones
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of stored embeddings that can be returned by search (excludes tombstoned ones)
+     */
+    public int getLiveSize() {
+        lock.readLock().lock();
+        try {
+            int live = 0;
+            for (int node = 0; node < count; node++) {
+                if (!isDeleted(node)) {
+                    live++;
+                }
+            }
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of students that can be returned by search
+     */
+    public int getUserCount() {
+        lock.readLock().lock();
+        try {
+            return ownerIndexes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double similarity(int nodeA, int nodeB) {
+        return VectorMath.dot(vectors, nodeA * dimension, vectors, nodeB * dimension, dimension);
+    }
+
+    /**
+     * Node paired with its similarity to the current query
+     */
+    private static final class Candidate {
+        static final Comparator<Candidate> MOST_SIMILAR_FIRST =
+                (a, b) -> Double.compare(b.similarity, a.similarity);
+        static final Comparator<Candidate> LEAST_SIMILAR_FIRST =
+                (a, b) -> Double.compare(a.similarity, b.similarity);
+
+        final int node;
+        final double similarity;
+
+        Candidate(int node, double similarity) {
+            this.node = node;
+            this.similarity = similarity;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.cs102.recognition;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Frame source that replays a directory of images (jpg, png, bmp) in file name order
+ * Useful for exported frames of a recording or hand-picked fixtures.
+ */
+public class ImageDirectoryFrameSource implements FrameSource {
+
+    private final Path directory;
+    private final List<Path> images;
+    private final double fps;
+    private int next;
+    private long startNanos;
+
+    /**
+     * @param fps Frames per second to deliver them at, or 0 to read them on demand (unpaced)
+     */
+    public ImageDirectoryFrameSource(Path directory, double fps) throws IOException {
+        this.directory = directory;
+        this.fps = fps;
+        try (Stream<Path> files = Files.list(directory)) {
+            this.images = files
+                    .filter(file -> isImage(file.getFileName().toString()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static boolean isImage(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        return name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png") || name.endsWith(".bmp");
+    }
+
+    @Override
+    public boolean read(Mat frame) {
+        if (next >= images.size()) {
+            return false;
+        }
+        if (fps > 0 && next > 0) {
+            long dueNanos = startNanos + (long) (next * 1_000_000_000L / fps);
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        if (next == 0) {
+            startNanos = System.nanoTime();
+        }
+
+        Path image = images.get(next++);
+        Mat decoded = Imgcodecs.imread(image.toString(), Imgcodecs.IMREAD_COLOR);
+        if (decoded.empty()) {
+            System.err.println("Failed to read image " + image);
+            decoded.release();
+            return false;
+        }
+        decoded.copyTo(frame);
+        decoded.release();
+        return true;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return next < images.size();
+    }
+
+    @Override
+    public String getName() {
+        return "images " + directory;
+    }
+
+    @Override
+    public boolean isPaced() {
+        return fps > 0;
+    }
+
+    public int getImageCount() {
+        return images.size();
+    }
+
+    @Override
+    public void close() {
+        next = images.size();
+    }
+}
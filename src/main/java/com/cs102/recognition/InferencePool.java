@@ -0,0 +1,247 @@
+package com.cs102.recognition;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-size pool of ONNX Runtime sessions for the same model
+ * Callers borrow a session, run inference and hand it back, so several threads
+ * (e.g. enrollment warm-up and live recognition) can run ArcFace at the same time
+ * without sharing one global lock. Closing the pool closes idle sessions at once and
+ * borrowed sessions when they are returned, so in-flight inference is never cut short.
+ */
+public class InferencePool implements AutoCloseable {
+
+    /**
+     * Creates one session configured with the given number of intra-op threads
+     */
+    @FunctionalInterface
+    public interface SessionFactory {
+        OrtSession create(int intraOpThreads) throws OrtException;
+    }
+
+    private static final long POLL_MILLIS = 100; // Waiting borrowers re-check for close this often
+
+    private final List<OrtSession> sessions = new ArrayList<>();
+    private final BlockingQueue<OrtSession> idleSessions;
+    private final Set<OrtSession> borrowedSessions = ConcurrentHashMap.newKeySet();
+    private final int intraOpThreads;
+    private volatile boolean closed;
+    private volatile Consumer<OrtSession> sessionCloseHook; // Releases per-session resources
+
+    // Metrics
+    private final AtomicInteger waitingThreads = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Create a pool sized from the number of available cores
+     */
+    public InferencePool(SessionFactory factory) throws OrtException {
+        this(factory, defaultPoolSize());
+    }
+
+    /**
+     * Create a pool with an explicit number of sessions
+     * Cores are split evenly between sessions so the pool never oversubscribes the CPU.
+     */
+    public InferencePool(SessionFactory factory, int poolSize) throws OrtException {
+        this(factory, poolSize, 0);
+    }
+
+    /**
+     * Create a pool with an explicit number of sessions and intra-op threads per session
+     * @param intraOpThreads Threads per session; 0 splits the cores evenly between sessions
+     */
+    public InferencePool(SessionFactory factory, int poolSize, int intraOpThreads) throws OrtException {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.intraOpThreads = intraOpThreads > 0 ? intraOpThreads : Math.max(1, cores / poolSize);
+        this.idleSessions = new ArrayBlockingQueue<>(poolSize);
+
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                OrtSession session = factory.create(this.intraOpThreads);
+                sessions.add(session);
+                idleSessions.add(session);
+            }
+        } catch (OrtException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Default pool size: one session per two cores, at most four
+     */
+    public static int defaultPoolSize() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(4, cores / 2));
+    }
+
+    /**
+     * Borrow a session, blocking until one is free
+     * Every borrowed session must be returned with {@link #release(OrtSession)}.
+     * @throws IllegalStateException if the pool is closed, or closes while waiting
+     */
+    public OrtSession acquire() throws OrtException {
+        long start = System.nanoTime();
+        waitingThreads.incrementAndGet();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new IllegalStateException("Inference pool is closed");
+                }
+                OrtSession session = idleSessions.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (session == null) {
+                    continue;
+                }
+                synchronized (this) {
+                    if (closed) {
+                        // Taken from the idle queue just before close() drained it
+                        closeSession(session);
+                        throw new IllegalStateException("Inference pool is closed");
+                    }
+                    borrowedSessions.add(session);
+                }
+                recordWait(System.nanoTime() - start);
+                return session;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrtException("Interrupted while waiting for an inference session");
+        } finally {
+            waitingThreads.decrementAndGet();
+        }
+    }
+
+    /**
+     * Return a session previously obtained from {@link #acquire()}
+     * Sessions returned after the pool was closed are closed here.
+     */
+    public synchronized void release(OrtSession session) {
+        if (!borrowedSessions.remove(session)) {
+            return;
+        }
+        if (closed) {
+            closeSession(session);
+        } else {
+            idleSessions.offer(session);
+        }
+    }
+
+    /**
+     * Run after each session is closed, e.g. to free buffers that belong to it
+     * Idle sessions are closed by {@link #close()}, borrowed ones when they are released afterwards.
+     */
+    public void setSessionCloseHook(Consumer<OrtSession> sessionCloseHook) {
+        this.sessionCloseHook = sessionCloseHook;
+    }
+
+    /**
+     * Any session of the pool, for reading model metadata (input names, shapes)
+     */
+    public OrtSession anySession() {
+        return sessions.get(0);
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    // ========== Metrics ==========
+
+    public int getPoolSize() {
+        return sessions.size();
+    }
+
+    public int getIntraOpThreads() {
+        return intraOpThreads;
+    }
+
+    /**
+     * Number of threads currently waiting for a free session
+     */
+    public int getQueueDepth() {
+        return waitingThreads.get();
+    }
+
+    /**
+     * Number of sessions currently running inference
+     */
+    public int getBusySessions() {
+        return borrowedSessions.size();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = borrowCount.get();
+        return count == 0 ? 0.0 : totalWaitNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * One-line summary of pool usage for logging
+     */
+    public String getStatsSummary() {
+        return String.format("sessions=%d (busy=%d), queueDepth=%d, borrows=%d, avgWait=%.2fms, maxWait=%.2fms",
+                getPoolSize(), getBusySessions(), getQueueDepth(), getBorrowCount(),
+                getAverageWaitMillis(), getMaxWaitMillis());
+    }
+
+    /**
+     * Close the pool
+     * Idle sessions are closed now; borrowed ones when they are released. Later acquire() calls fail.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        List<OrtSession> idle = new ArrayList<>();
+        idleSessions.drainTo(idle);
+        for (OrtSession session : idle) {
+            closeSession(session);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void closeSession(OrtSession session) {
+        try {
+            session.close();
+        } catch (OrtException e) {
+            System.err.println("Error closing ONNX session: " + e.getMessage());
+        }
+        Consumer<OrtSession> hook = sessionCloseHook;
+        if (hook != null) {
+            hook.accept(session);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.cs102.recognition;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * ONNX Runtime execution settings for ArcFace sessions
+ * Values of 0 mean "choose automatically". The application-wide default is bound from
+ * application.properties (recognition.inference.*) by InferenceConfig, so each deployment
+ * machine can be tuned without a rebuild.
+ */
+public class InferenceProfile {
+
+    private static volatile InferenceProfile defaultProfile = new InferenceProfile();
+
+    private int poolSize = 0;                   // Pooled sessions; 0 = InferencePool.defaultPoolSize()
+    private int intraOpThreads = 0;             // Threads per session; 0 = cores / poolSize
+    private int interOpThreads = 0;             // Threads between graph nodes (PARALLEL mode); 0 = ORT default
+    private OrtSession.SessionOptions.ExecutionMode executionMode = OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL;
+    private OrtSession.SessionOptions.OptLevel optimizationLevel = OrtSession.SessionOptions.OptLevel.ALL_OPT;
+    private boolean memoryArena = true;         // CPU memory arena (faster, keeps memory after peaks)
+    private boolean memoryPattern = true;       // Pre-plan allocations for repeated input shapes
+    private String optimizedModelPath;          // Cache file for the optimised graph; null = disabled
+
+    /**
+     * Profile used by ArcFaceRecognizer constructors that do not take one
+     */
+    public static InferenceProfile getDefault() {
+        return defaultProfile;
+    }
+
+    public static void setDefault(InferenceProfile profile) {
+        defaultProfile = profile;
+    }
+
+    /**
+     * Copy of this profile with a different pool size
+     */
+    public InferenceProfile withPoolSize(int poolSize) {
+        InferenceProfile copy = new InferenceProfile();
+        copy.poolSize = poolSize;
+        copy.intraOpThreads = intraOpThreads;
+        copy.interOpThreads = interOpThreads;
+        copy.executionMode = executionMode;
+        copy.optimizationLevel = optimizationLevel;
+        copy.memoryArena = memoryArena;
+        copy.memoryPattern = memoryPattern;
+        copy.optimizedModelPath = optimizedModelPath;
+        return copy;
+    }
+
+    /**
+     * Pool size to use, resolving 0 to the core-based default
+     */
+    public int resolvePoolSize() {
+        return poolSize > 0 ? poolSize : InferencePool.defaultPoolSize();
+    }
+
+    /**
+     * Session options for one pooled session
+     * @param resolvedIntraOpThreads Intra-op threads chosen by the pool
+     */
+    public OrtSession.SessionOptions createSessionOptions(int resolvedIntraOpThreads) throws OrtException {
+        OrtSession.SessionOptions opts = new OrtSession.SessionOptions();
+        opts.setOptimizationLevel(optimizationLevel);
+        opts.setIntraOpNumThreads(resolvedIntraOpThreads);
+        opts.setExecutionMode(executionMode);
+        if (interOpThreads > 0) {
+            opts.setInterOpNumThreads(interOpThreads);
+        }
+        opts.setCPUArenaAllocator(memoryArena);
+        opts.setMemoryPatternOptimization(memoryPattern);
+        return opts;
+    }
+
+    /**
+     * One-line summary for startup logs
+     */
+    public String describe() {
+        return "mode=" + executionMode + ", opt=" + optimizationLevel
+                + ", interOp=" + (interOpThreads > 0 ? interOpThreads : "auto")
+                + ", arena=" + memoryArena + ", memPattern=" + memoryPattern
+                + ", optimizedModel=" + (optimizedModelPath != null ? optimizedModelPath : "off");
+    }
+
+    // ========== Getters and Setters ==========
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getIntraOpThreads() {
+        return intraOpThreads;
+    }
+
+    public void setIntraOpThreads(int intraOpThreads) {
+        this.intraOpThreads = intraOpThreads;
+    }
+
+    public int getInterOpThreads() {
+        return interOpThreads;
+    }
+
+    public void setInterOpThreads(int interOpThreads) {
+        this.interOpThreads = interOpThreads;
+    }
+
+    public OrtSession.SessionOptions.ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(OrtSession.SessionOptions.ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public OrtSession.SessionOptions.OptLevel getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    public void setOptimizationLevel(OrtSession.SessionOptions.OptLevel optimizationLevel) {
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    public boolean isMemoryArena() {
+        return memoryArena;
+    }
+
+    public void setMemoryArena(boolean memoryArena) {
+        this.memoryArena = memoryArena;
+    }
+
+    public boolean isMemoryPattern() {
+        return memoryPattern;
+    }
+
+    public void setMemoryPattern(boolean memoryPattern) {
+        this.memoryPattern = memoryPattern;
+    }
+
+    public String getOptimizedModelPath() {
+        return optimizedModelPath;
+    }
+
+    public void setOptimizedModelPath(String optimizedModelPath) {
+        this.optimizedModelPath = optimizedModelPath == null || optimizedModelPath.isBlank() ? null : optimizedModelPath;
+    }
+}
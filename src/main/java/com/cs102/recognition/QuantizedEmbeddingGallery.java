@@ -0,0 +1,264 @@
+package com.cs102.recognition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Enrolled face embeddings stored as int8 codes with one float scale per vector
+ * Each 512-float embedding (2 KB) shrinks to 512 bytes plus a 4-byte scale, so tens of thousands
+ * of students fit in memory on lab machines. Queries stay in float32; similarity is
+ * scale * dot(query, codes), i.e. the exact dot product against the dequantized vector.
+ * Thread-safe: matching takes a read lock, add/remove take a write lock.
+ */
+public class QuantizedEmbeddingGallery {
+
+    private static final int INITIAL_CAPACITY = 64; // Rows
+
+    private final int dimension;
+    private byte[] codes;
+    private float[] scales;
+    private int[] owners;
+    private int size; // Number of rows in use
+
+    // Owner index -> userId (null once removed) and the reverse lookup; freed indexes are reused
+    private final List<String> ownerIds = new ArrayList<>();
+    private final Map<String, Integer> ownerIndexes = new HashMap<>();
+    private final Deque<Integer> freeOwners = new ArrayDeque<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public QuantizedEmbeddingGallery(int dimension) {
+        this.dimension = dimension;
+        this.codes = new byte[INITIAL_CAPACITY * dimension];
+        this.scales = new float[INITIAL_CAPACITY];
+        this.owners = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Build a quantized gallery from the per-student map used by the live recognition loaders
+     */
+    public static QuantizedEmbeddingGallery fromMap(Map<String, float[][]> embeddingsByUser) {
+        int dimension = ArcFaceRecognizer.EMBEDDING_SIZE;
+        for (float[][] embeddings : embeddingsByUser.values()) {
+            if (embeddings.length > 0) {
+                dimension = embeddings[0].length;
+                break;
+            }
+        }
+
+        QuantizedEmbeddingGallery gallery = new QuantizedEmbeddingGallery(dimension);
+        for (Map.Entry<String, float[][]> entry : embeddingsByUser.entrySet()) {
+            gallery.add(entry.getKey(), entry.getValue());
+        }
+        return gallery;
+    }
+
+    /**
+     * Symmetric int8 quantization: code = round(value / scale) with scale = max|value| / 127
+     * @param vector Embedding to quantize
+     * @param out Destination for the codes
+     * @param outOffset First index written in {@code out}
+     * @return The scale that maps codes back to values
+     */
+    public static float quantize(float[] vector, byte[] out, int outOffset) {
+        float maxAbs = 0f;
+        for (float value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        if (maxAbs == 0f) {
+            Arrays.fill(out, outOffset, outOffset + vector.length, (byte) 0);
+            return 0f;
+        }
+
+        float scale = maxAbs / 127f;
+        for (int i = 0; i < vector.length; i++) {
+            int code = Math.round(vector[i] / scale);
+            out[outOffset + i] = (byte) Math.max(-127, Math.min(127, code));
+        }
+        return scale;
+    }
+
+    /**
+     * Append embeddings for a student
+     * If the student already has embeddings the new ones are added alongside them.
+     */
+    public void add(String userId, float[][] embeddings) {
+        for (float[] embedding : embeddings) {
+            if (embedding.length != dimension) {
+                throw new IllegalArgumentException("Expected embedding of length " + dimension
+                        + " but got " + embedding.length);
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            int owner = ownerIndexes.computeIfAbsent(userId, this::allocateOwner);
+
+            ensureCapacity(size + embeddings.length);
+            for (float[] embedding : embeddings) {
+                scales[size] = quantize(embedding, codes, size * dimension);
+                owners[size] = owner;
+                size++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every embedding belonging to a student
+     * Remaining rows are compacted so the buffer stays dense.
+     * @return true if the student was in the gallery
+     */
+    public boolean remove(String userId) {
+        lock.writeLock().lock();
+        try {
+            Integer owner = ownerIndexes.remove(userId);
+            if (owner == null) {
+                return false;
+            }
+            ownerIds.set(owner, null);
+            freeOwners.push(owner);
+
+            int write = 0;
+            for (int read = 0; read < size; read++) {
+                if (owners[read] == owner) {
+                    continue;
+                }
+                if (write != read) {
+                    System.arraycopy(codes, read * dimension, codes, write * dimension, dimension);
+                    scales[write] = scales[read];
+                    owners[write] = owners[read];
+                }
+                write++;
+            }
+            size = write;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace a student's embeddings, e.g. after they re-register their face
+     */
+    public void replace(String userId, float[][] embeddings) {
+        lock.writeLock().lock();
+        try {
+            remove(userId);
+            add(userId, embeddings);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Owner index for a new student, reusing one freed by {@link #remove(String)} when available
+     */
+    private int allocateOwner(String userId) {
+        Integer free = freeOwners.poll();
+        if (free != null) {
+            ownerIds.set(free, userId);
+            return free;
+        }
+        ownerIds.add(userId);
+        return ownerIds.size() - 1;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= owners.length) {
+            return;
+        }
+        int newCapacity = Math.max(rows, owners.length * 2);
+        codes = Arrays.copyOf(codes, newCapacity * dimension);
+        scales = Arrays.copyOf(scales, newCapacity);
+        owners = Arrays.copyOf(owners, newCapacity);
+    }
+
+    /**
+     * Find the enrolled embedding most similar to the query
+     * @param queryEmbedding L2-normalised float32 query embedding
+     * @param threshold Minimum similarity; matches must be strictly above it
+     * @return Best match above threshold, or null
+     */
+    public ArcFaceRecognizer.MatchResult findBestMatch(float[] queryEmbedding, double threshold) {
+        lock.readLock().lock();
+        try {
+            int bestRow = -1;
+            double bestSimilarity = threshold;
+
+            for (int row = 0; row < size; row++) {
+                double similarity = scales[row]
+                        * VectorMath.dotInt8(queryEmbedding, 0, codes, row * dimension, dimension);
+                if (similarity > bestSimilarity) {
+                    bestSimilarity = similarity;
+                    bestRow = row;
+                }
+            }
+
+            if (bestRow >= 0) {
+                return new ArcFaceRecognizer.MatchResult(ownerIds.get(owners[bestRow]), bestSimilarity);
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== Accessors ==========
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Total number of stored embeddings
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of students with at least one embedding
+     */
+    public int getUserCount() {
+        lock.readLock().lock();
+        try {
+            return ownerIndexes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String userId) {
+        lock.readLock().lock();
+        try {
+            return ownerIndexes.containsKey(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes used by the stored embeddings (codes, scales and owners), excluding spare capacity
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) size * (dimension + Float.BYTES + Integer.BYTES);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,902 @@
+package com.cs102.recognition;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.objdetect.FaceDetectorYN;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Multi-stage live recognition pipeline
+ *
+ *   grab -> detect (YuNet) -> align (5-point landmarks) -> embed (batched ArcFace) -> match -> check-in
+ *
+ * Every stage runs on its own thread. The grab stage reads every camera frame for the preview and
+ * hands the freshest one to detection only when detection asks for it, so the camera is never
+ * slowed down and no stale frames are queued. The later stages are connected by small bounded
+ * queues with blocking puts, so a slow stage (usually embedding) backs up into detection instead
+ * of growing memory. Check-ins are written by a separate worker so database latency never stalls
+ * recognition. Each stage records its latency in {@link StageMetrics}.
+ *
+ * Detections are associated with {@link FaceTracker} tracks right after detection. Only tracks that
+ * are new, unconfirmed or due for re-verification are cropped and embedded; the others carry their
+ * identity forward, so a seated class costs a fraction of the ArcFace inferences.
+ *
+ * Several cameras (e.g. every entrance of a lecture hall) can feed one pipeline. Each camera has
+ * its own grab and detect threads, detector, tracker and scheduler; align, embed, match and
+ * check-in are shared, so all cameras batch into the same ArcFace pool and match against the
+ * same gallery. Check-ins are merged into one stream and a student seen by two cameras is
+ * only checked in once.
+ *
+ * Recorded sources (video files, image directories) that are not paced in real time are read on
+ * demand, one frame per detection, so a replay analyses every frame as fast as the pipeline allows.
+ * When every source is exhausted the pipeline finishes the frames already in flight and then
+ * reports {@link #isRunning()} false.
+ */
+public class RecognitionPipeline {
+
+    private static final int STAGE_QUEUE_CAPACITY = 2;      // Frames in flight between two stages
+    private static final int CHECK_IN_QUEUE_CAPACITY = 256;  // Pending check-ins
+    private static final long POLL_MILLIS = 100;             // Stage wake-up interval when idle
+    private static final long SCHEDULER_SLICE_MILLIS = 20;   // Longest detect-stage sleep with adaptive scheduling
+
+    // ========== Callbacks ==========
+
+    /**
+     * Maps one face embedding to a student
+     */
+    @FunctionalInterface
+    public interface Matcher {
+        ArcFaceRecognizer.MatchResult match(float[] embedding);
+    }
+
+    /**
+     * Called on a camera's grab thread for every frame, with that camera's most recent results
+     * The frame may be drawn on; it is reused after the call returns.
+     */
+    @FunctionalInterface
+    public interface FrameListener {
+        void onFrame(int camera, Mat frame, FrameResult latestResult);
+    }
+
+    /**
+     * Called on the match thread once per analysed frame, for every camera
+     */
+    @FunctionalInterface
+    public interface ResultListener {
+        void onResult(FrameResult result);
+    }
+
+    /**
+     * Writes one check-in; called on the check-in thread
+     * Returning false (or throwing) withdraws the check-in, so a later recognition submits it again.
+     */
+    @FunctionalInterface
+    public interface CheckInHandler {
+        boolean checkIn(String userId, double confidence) throws Exception;
+    }
+
+    // ========== Results ==========
+
+    /**
+     * One detected face and, if recognised, who it is
+     */
+    public static class Recognition {
+        public final long trackId;      // -1 without tracking
+        public final boolean embedded;  // true if ArcFace ran for this face in this frame
+        public final Rect box;
+        public final float[] landmarks; // 5 points (x, y) in frame coordinates: right eye, left eye, nose, mouth corners
+        public final float score;
+        public final ArcFaceRecognizer.MatchResult match; // null if no match above threshold
+
+        public Recognition(long trackId, boolean embedded, Rect box, float[] landmarks, float score,
+                           ArcFaceRecognizer.MatchResult match) {
+            this.trackId = trackId;
+            this.embedded = embedded;
+            this.box = box;
+            this.landmarks = landmarks;
+            this.score = score;
+            this.match = match;
+        }
+    }
+
+    /**
+     * Recognition results for one analysed frame
+     */
+    public static class FrameResult {
+        public final int camera;
+        public final long frameId;
+        public final long captureNanos;
+        public final List<Recognition> recognitions;
+
+        public FrameResult(int camera, long frameId, long captureNanos, List<Recognition> recognitions) {
+            this.camera = camera;
+            this.frameId = frameId;
+            this.captureNanos = captureNanos;
+            this.recognitions = recognitions;
+        }
+    }
+
+    /**
+     * Work item that flows through the analysis stages; each stage fills in its part
+     */
+    private static class Packet {
+        final Camera camera;
+        final long frameId;
+        final long captureNanos;
+        final Mat frame;
+        List<FaceDetection> detections = Collections.emptyList();
+        List<FaceTracker.Track> tracks = Collections.emptyList();        // One per detection, empty without tracking
+        List<FaceDetection> toEmbed = Collections.emptyList();           // Detections that need ArcFace
+        List<FaceTracker.Track> toEmbedTracks = Collections.emptyList(); // Their tracks, empty without tracking
+        List<Mat> faces = Collections.emptyList();
+        List<FaceDetection> embeddedDetections = Collections.emptyList(); // Detections that produced a face crop
+        List<FaceTracker.Track> embeddedTracks = Collections.emptyList();
+        float[][] embeddings = new float[0][];
+
+        Packet(Camera camera, long frameId, long captureNanos, Mat frame) {
+            this.camera = camera;
+            this.frameId = frameId;
+            this.captureNanos = captureNanos;
+            this.frame = frame;
+        }
+
+        void release() {
+            camera.pendingPackets.decrementAndGet();
+            frame.release();
+            for (Mat face : faces) {
+                face.release();
+            }
+        }
+    }
+
+    private static class CheckInRequest {
+        final String userId;
+        final double confidence;
+
+        CheckInRequest(String userId, double confidence) {
+            this.userId = userId;
+            this.confidence = confidence;
+        }
+    }
+
+    /**
+     * Per-camera state: source, detector, tracker, scheduler and the grab -> detect handoff
+     */
+    private static class Camera {
+        final int index;
+        final FrameSource source;
+        final ScaledFaceDetector detector;
+        FaceTracker tracker;                     // null without tracking
+        AdaptiveDetectionScheduler scheduler;    // null for the fixed detection interval
+        volatile boolean finished;
+
+        // Detect raises the flag, grab copies the next frame into the slot
+        final AtomicBoolean frameRequested = new AtomicBoolean(false);
+        final BlockingQueue<Packet> frameSlot = new ArrayBlockingQueue<>(1);
+        final AtomicReference<FrameResult> latestResult;
+
+        final AtomicInteger pendingPackets = new AtomicInteger(); // Frames between grab and the end of match
+
+        final AtomicLong grabbedFrames = new AtomicLong();
+        final AtomicLong analysedFrames = new AtomicLong();
+        final AtomicLong processedFaces = new AtomicLong();
+
+        Camera(int index, FrameSource source, FaceDetectorYN detector) {
+            this.index = index;
+            this.source = source;
+            this.detector = new ScaledFaceDetector(detector, 0);
+            this.latestResult = new AtomicReference<>(new FrameResult(index, -1, 0, Collections.emptyList()));
+        }
+    }
+
+    // ========== State ==========
+
+    private final List<Camera> cameras = new ArrayList<>();
+    private final ArcFaceRecognizer arcFace;
+    private final Matcher matcher;
+
+    private FrameListener frameListener;
+    private ResultListener resultListener;
+    private CheckInHandler checkInHandler;
+    private volatile long detectionIntervalMillis = 100; // ~10 Hz, as the original detection thread
+    private int maxFacesPerFrame = Integer.MAX_VALUE;
+    private boolean alignFaces = true;
+    private boolean tracking = true;
+    private boolean adaptiveScheduling = false;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean checkInRunning = new AtomicBoolean(false);
+    private final List<Thread> stageThreads = new ArrayList<>();
+    private Thread checkInThread;
+
+    private final BlockingQueue<Packet> alignQueue = new ArrayBlockingQueue<>(STAGE_QUEUE_CAPACITY);
+    private final BlockingQueue<Packet> embedQueue = new ArrayBlockingQueue<>(STAGE_QUEUE_CAPACITY);
+    private final BlockingQueue<Packet> matchQueue = new ArrayBlockingQueue<>(STAGE_QUEUE_CAPACITY);
+    private final BlockingQueue<CheckInRequest> checkInQueue = new ArrayBlockingQueue<>(CHECK_IN_QUEUE_CAPACITY);
+    private final Set<String> submittedCheckIns = ConcurrentHashMap.newKeySet(); // Merged across cameras
+
+    // Metrics
+    private final Map<String, StageMetrics> metrics = new LinkedHashMap<>();
+    private final StageMetrics detectMetrics = addMetrics("detect");
+    private final StageMetrics alignMetrics = addMetrics("align");
+    private final StageMetrics embedMetrics = addMetrics("embed");
+    private final StageMetrics matchMetrics = addMetrics("match");
+    private final StageMetrics totalMetrics = addMetrics("total");
+    private final StageMetrics checkInMetrics = addMetrics("checkIn");
+    private final AtomicLong embeddedFaces = new AtomicLong();
+    private final AtomicLong trackedFaces = new AtomicLong(); // Faces whose identity was carried by a track
+    private final AtomicLong rejectedCheckIns = new AtomicLong();
+    private final AtomicLong duplicateCheckIns = new AtomicLong();
+    private volatile long startNanos;
+
+    /**
+     * Pipeline without cameras; add them with {@link #addCamera(FrameSource, FaceDetectorYN)}
+     */
+    public RecognitionPipeline(ArcFaceRecognizer arcFace, Matcher matcher) {
+        this.arcFace = arcFace;
+        this.matcher = matcher;
+    }
+
+    /**
+     * Single-camera pipeline
+     */
+    public RecognitionPipeline(FrameSource source, FaceDetectorYN detector, ArcFaceRecognizer arcFace, Matcher matcher) {
+        this(arcFace, matcher);
+        addCamera(source, detector);
+    }
+
+    private StageMetrics addMetrics(String name) {
+        StageMetrics stageMetrics = new StageMetrics(name);
+        metrics.put(name, stageMetrics);
+        return stageMetrics;
+    }
+
+    // ========== Configuration ==========
+
+    /**
+     * Add a camera (before start)
+     * @param detector YuNet instance for this camera only (detectors are not thread-safe)
+     * @return Camera index used in results and listener callbacks
+     */
+    public int addCamera(FrameSource source, FaceDetectorYN detector) {
+        if (running.get()) {
+            throw new IllegalStateException("Cameras must be added before the pipeline starts");
+        }
+        Camera camera = new Camera(cameras.size(), source, detector);
+        cameras.add(camera);
+        return camera.index;
+    }
+
+    public int getCameraCount() {
+        return cameras.size();
+    }
+
+    public String getCameraName(int camera) {
+        return cameras.get(camera).source.getName();
+    }
+
+    public void setFrameListener(FrameListener frameListener) {
+        this.frameListener = frameListener;
+    }
+
+    public void setResultListener(ResultListener resultListener) {
+        this.resultListener = resultListener;
+    }
+
+    public void setCheckInHandler(CheckInHandler checkInHandler) {
+        this.checkInHandler = checkInHandler;
+    }
+
+    /**
+     * Minimum time between two detections without adaptive scheduling (default 100ms)
+     */
+    public void setDetectionIntervalMillis(long detectionIntervalMillis) {
+        this.detectionIntervalMillis = Math.max(0, detectionIntervalMillis);
+    }
+
+    public long getDetectionIntervalMillis() {
+        return detectionIntervalMillis;
+    }
+
+    /**
+     * Run YuNet on a copy downscaled to this width (0 = full resolution)
+     * Boxes are mapped back and faces are still cropped from the full-resolution frame.
+     */
+    public void setDetectionWidth(int detectionWidth) {
+        for (Camera camera : cameras) {
+            camera.detector.setDetectionWidth(detectionWidth);
+        }
+    }
+
+    /**
+     * Warp faces to the ArcFace landmark template before embedding (default on)
+     * Off crops the detection box, as faces were registered before alignment was added.
+     */
+    public void setAlignFaces(boolean alignFaces) {
+        this.alignFaces = alignFaces;
+    }
+
+    /**
+     * Only embed the largest N faces of each frame (e.g. 1 for student self check-in)
+     */
+    public void setMaxFacesPerFrame(int maxFacesPerFrame) {
+        this.maxFacesPerFrame = Math.max(1, maxFacesPerFrame);
+    }
+
+    /**
+     * Adapt each camera's detection rate to scene motion and load (default off: fixed interval)
+     */
+    public void setAdaptiveScheduling(boolean adaptiveScheduling) {
+        this.adaptiveScheduling = adaptiveScheduling;
+    }
+
+    /**
+     * Scheduler of a camera (null before start or without adaptive scheduling)
+     */
+    public AdaptiveDetectionScheduler getScheduler(int camera) {
+        return cameras.get(camera).scheduler;
+    }
+
+    /**
+     * Track faces to skip embeddings for already identified students (default on)
+     */
+    public void setTracking(boolean tracking) {
+        this.tracking = tracking;
+    }
+
+    /**
+     * Tracker of a camera (null before start or without tracking)
+     */
+    public FaceTracker getTracker(int camera) {
+        return cameras.get(camera).tracker;
+    }
+
+    // ========== Lifecycle ==========
+
+    /**
+     * Start all stage threads
+     */
+    public void start() {
+        if (cameras.isEmpty()) {
+            throw new IllegalStateException("No camera added");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        startNanos = System.nanoTime();
+        checkInRunning.set(true);
+
+        for (Camera camera : cameras) {
+            camera.tracker = tracking ? new FaceTracker() : null;
+            camera.scheduler = adaptiveScheduling ? new AdaptiveDetectionScheduler() : null;
+            startStage("Pipeline-Grab-" + camera.index, () -> runGrabStage(camera));
+            startStage("Pipeline-Detect-" + camera.index, () -> runDetectStage(camera));
+        }
+        startStage("Pipeline-Align", () -> runStage(alignQueue, embedQueue, alignMetrics, this::align));
+        startStage("Pipeline-Embed", () -> runStage(embedQueue, matchQueue, embedMetrics, this::embed));
+        startStage("Pipeline-Match", () -> runStage(matchQueue, null, matchMetrics, this::match));
+
+        checkInThread = new Thread(this::runCheckInStage, "Pipeline-CheckIn");
+        checkInThread.setDaemon(true);
+        checkInThread.start();
+    }
+
+    private void startStage(String name, Runnable body) {
+        Thread thread = new Thread(() -> {
+            try {
+                body.run();
+            } catch (Exception e) {
+                System.err.println(name + " stopped: " + e.getMessage());
+            }
+        }, name);
+        thread.setDaemon(true);
+        stageThreads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Stop all stages and close the frame sources
+     * Pending check-ins are still written before the check-in worker exits.
+     * Safe to call from a listener callback.
+     */
+    public void stop() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+
+        Thread current = Thread.currentThread();
+        for (Thread thread : stageThreads) {
+            if (thread != current) {
+                thread.interrupt();
+            }
+        }
+        for (Thread thread : stageThreads) {
+            if (thread != current) {
+                joinQuietly(thread, 2000);
+            }
+        }
+
+        drain(alignQueue);
+        drain(embedQueue);
+        drain(matchQueue);
+
+        checkInRunning.set(false);
+        if (checkInThread != null && checkInThread != current) {
+            joinQuietly(checkInThread, 5000);
+        }
+
+        for (Camera camera : cameras) {
+            drain(camera.frameSlot);
+            camera.source.close();
+            camera.detector.release();
+            if (camera.scheduler != null) {
+                camera.scheduler.release();
+            }
+        }
+        System.out.println("Recognition pipeline stopped: " + getMetricsSummary());
+    }
+
+    /**
+     * Whether the pipeline is running
+     * False after stop, or once every source is exhausted and its last frames have been matched.
+     * Call stop() afterwards to write pending check-ins and release the sources.
+     */
+    public boolean isRunning() {
+        if (!running.get()) {
+            return false;
+        }
+        for (Camera camera : cameras) {
+            if (!camera.finished || camera.pendingPackets.get() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether every queued check-in has been written
+     */
+    public boolean isCheckInQueueEmpty() {
+        return checkInQueue.isEmpty();
+    }
+
+    private static void joinQuietly(Thread thread, long millis) {
+        try {
+            thread.join(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void drain(BlockingQueue<Packet> queue) {
+        Packet packet;
+        while ((packet = queue.poll()) != null) {
+            packet.release();
+        }
+    }
+
+    // ========== Stages ==========
+
+    /**
+     * Read every frame of one camera, feed the preview, and copy a frame for detection when requested
+     */
+    private void runGrabStage(Camera camera) {
+        Mat frame = new Mat();
+        long frameId = 0;
+        try {
+            while (running.get()) {
+                // Recordings that are not paced are read on demand, so every frame is analysed
+                if (!camera.source.isPaced() && !camera.frameRequested.get()) {
+                    Thread.sleep(1);
+                    continue;
+                }
+                if (!camera.source.read(frame)) {
+                    if (!camera.source.isOpened()) {
+                        System.out.println("Frame source " + camera.source.getName() + " finished");
+                        camera.finished = true;
+                        break;
+                    }
+                    Thread.sleep(5);
+                    continue;
+                }
+                frameId++;
+                camera.grabbedFrames.incrementAndGet();
+
+                if (camera.scheduler != null) {
+                    camera.scheduler.observeFrame(frame);
+                }
+
+                if (camera.frameRequested.compareAndSet(true, false)) {
+                    camera.pendingPackets.incrementAndGet();
+                    Packet packet = new Packet(camera, frameId, System.nanoTime(), frame.clone());
+                    if (!camera.frameSlot.offer(packet)) {
+                        packet.release();
+                    }
+                }
+
+                if (frameListener != null) {
+                    frameListener.onFrame(camera.index, frame, camera.latestResult.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Ask a camera for its freshest frame, run YuNet on it and pass the detections on
+     */
+    private void runDetectStage(Camera camera) {
+        AdaptiveDetectionScheduler scheduler = camera.scheduler;
+        FaceTracker tracker = camera.tracker;
+        try {
+            long lastDetection = 0;
+            int lastFaceCount = 0;
+            long lastTrackChanges = 0;
+            // Keep going until the source is exhausted and its last requested frame is taken
+            while (running.get() && !(camera.finished && camera.frameSlot.isEmpty())) {
+                if (scheduler != null) {
+                    // Sleep in short slices so a motion burst can bring the next detection forward
+                    long wait = scheduler.millisUntilDue();
+                    if (wait > 0) {
+                        Thread.sleep(Math.min(wait, SCHEDULER_SLICE_MILLIS));
+                        continue;
+                    }
+                } else {
+                    long wait = detectionIntervalMillis - (System.currentTimeMillis() - lastDetection);
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                }
+
+                camera.frameRequested.set(true);
+                Packet packet = camera.frameSlot.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (packet == null) {
+                    continue;
+                }
+                lastDetection = System.currentTimeMillis();
+
+                long start = System.nanoTime();
+                try {
+                    packet.detections = detect(camera, packet.frame);
+                    assignTracks(packet);
+                } catch (Exception e) {
+                    System.err.println("ERROR: Face detection failed - " + e.getMessage());
+                    packet.release();
+                    continue;
+                }
+                detectMetrics.record(System.nanoTime() - start);
+
+                if (scheduler != null) {
+                    // Churn: tracks started or lost, or the face count changing without a tracker
+                    int churn;
+                    if (tracker != null) {
+                        long trackChanges = tracker.getCreatedTracks() + tracker.getLostTracks();
+                        churn = (int) (trackChanges - lastTrackChanges);
+                        lastTrackChanges = trackChanges;
+                    } else {
+                        churn = Math.abs(packet.detections.size() - lastFaceCount);
+                    }
+                    lastFaceCount = packet.detections.size();
+                    scheduler.onDetection(churn, totalMetrics.getPercentileMillis(50));
+                }
+
+                // Blocks while later stages are busy (backpressure)
+                try {
+                    alignQueue.put(packet);
+                } catch (InterruptedException e) {
+                    packet.release();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageWork {
+        void process(Packet packet) throws Exception;
+    }
+
+    /**
+     * Generic stage loop: take from the input queue, process, put to the output queue
+     * @param output Next stage's queue, or null for the last stage (packet is released)
+     */
+    private void runStage(BlockingQueue<Packet> input, BlockingQueue<Packet> output,
+                          StageMetrics stageMetrics, StageWork work) {
+        try {
+            while (running.get()) {
+                Packet packet = input.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (packet == null) {
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    work.process(packet);
+                } catch (Exception e) {
+                    System.err.println("ERROR: " + stageMetrics.getName() + " stage failed - " + e.getMessage());
+                    packet.release();
+                    continue;
+                }
+                stageMetrics.record(System.nanoTime() - start);
+
+                if (output != null) {
+                    try {
+                        output.put(packet);
+                    } catch (InterruptedException e) {
+                        packet.release();
+                        throw e;
+                    }
+                } else {
+                    packet.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<FaceDetection> detect(Camera camera, Mat frame) {
+        List<FaceDetection> detections = camera.detector.detect(frame);
+        if (detections.size() > maxFacesPerFrame) {
+            detections.sort((a, b) -> Double.compare(b.box.area(), a.box.area()));
+            detections = new ArrayList<>(detections.subList(0, maxFacesPerFrame));
+        }
+        return detections;
+    }
+
+    /**
+     * Associate detections with tracks and decide which faces need ArcFace
+     */
+    private void assignTracks(Packet packet) {
+        FaceTracker currentTracker = packet.camera.tracker;
+        if (currentTracker == null) {
+            packet.toEmbed = packet.detections;
+            return;
+        }
+
+        packet.tracks = currentTracker.update(packet.detections);
+        List<FaceTracker.Track> claimed = currentTracker.claimForEmbedding(packet.tracks);
+        List<FaceDetection> toEmbed = new ArrayList<>(claimed.size());
+        for (FaceTracker.Track track : claimed) {
+            toEmbed.add(track.getDetection());
+        }
+        packet.toEmbed = toEmbed;
+        packet.toEmbedTracks = claimed;
+        trackedFaces.addAndGet(packet.detections.size() - claimed.size());
+    }
+
+    /**
+     * Align (or, without landmarks, crop) each face that needs an embedding and preprocess it for ArcFace
+     */
+    private void align(Packet packet) {
+        List<Mat> faces = new ArrayList<>();
+        List<FaceDetection> kept = new ArrayList<>();
+        List<FaceTracker.Track> keptTracks = new ArrayList<>();
+        Rect bounds = new Rect(0, 0, packet.frame.cols(), packet.frame.rows());
+
+        for (int i = 0; i < packet.toEmbed.size(); i++) {
+            FaceDetection detection = packet.toEmbed.get(i);
+            Rect crop = FaceDetection.intersect(detection.box, bounds);
+            if (crop.width <= 0 || crop.height <= 0) {
+                continue;
+            }
+            Mat face = alignFaces ? FaceAligner.align(packet.frame, detection.landmarks) : null;
+            if (face == null) {
+                face = packet.frame.submat(crop);
+            }
+            faces.add(arcFace.preprocessFace(face));
+            face.release();
+            kept.add(detection);
+            if (!packet.toEmbedTracks.isEmpty()) {
+                keptTracks.add(packet.toEmbedTracks.get(i));
+            }
+        }
+
+        packet.faces = faces;
+        packet.embeddedDetections = kept;
+        packet.embeddedTracks = keptTracks;
+    }
+
+    /**
+     * Embed every face of the frame in one batched inference
+     */
+    private void embed(Packet packet) throws Exception {
+        packet.embeddings = arcFace.extractEmbeddings(packet.faces);
+        embeddedFaces.addAndGet(packet.embeddings.length);
+    }
+
+    /**
+     * Match embeddings, publish the frame result and notify the listener
+     */
+    private void match(Packet packet) {
+        List<Recognition> recognitions = new ArrayList<>();
+        Camera camera = packet.camera;
+        FaceTracker currentTracker = camera.tracker;
+
+        if (packet.tracks.isEmpty()) {
+            // No tracking: every detection was embedded
+            for (int i = 0; i < packet.embeddings.length; i++) {
+                FaceDetection detection = packet.embeddedDetections.get(i);
+                ArcFaceRecognizer.MatchResult match = matcher.match(packet.embeddings[i]);
+                recognitions.add(new Recognition(-1, true, detection.box, detection.landmarks, detection.score, match));
+            }
+        } else {
+            for (int i = 0; i < packet.embeddings.length; i++) {
+                currentTracker.applyMatch(packet.embeddedTracks.get(i), matcher.match(packet.embeddings[i]));
+            }
+            // Every face of the frame, with the identity its track carries
+            for (int i = 0; i < packet.tracks.size(); i++) {
+                FaceTracker.Track track = packet.tracks.get(i);
+                FaceDetection detection = packet.detections.get(i);
+                recognitions.add(new Recognition(track.getId(), packet.embeddedTracks.contains(track),
+                        currentTracker.getBox(track), detection.landmarks, detection.score, currentTracker.getIdentity(track)));
+            }
+        }
+
+        FrameResult result = new FrameResult(camera.index, packet.frameId, packet.captureNanos, recognitions);
+        camera.latestResult.set(result);
+        camera.analysedFrames.incrementAndGet();
+        camera.processedFaces.addAndGet(recognitions.size());
+        totalMetrics.record(System.nanoTime() - packet.captureNanos);
+
+        if (resultListener != null) {
+            resultListener.onResult(result);
+        }
+    }
+
+    /**
+     * Queue a check-in for the background writer
+     * Each student is queued once per pipeline, whichever camera saw them first.
+     * @return true if queued now or already queued earlier; false if the queue is full or the
+     *         pipeline has no check-in handler
+     */
+    public boolean submitCheckIn(String userId, double confidence) {
+        if (checkInHandler == null) {
+            rejectedCheckIns.incrementAndGet();
+            return false;
+        }
+        if (!submittedCheckIns.add(userId)) {
+            duplicateCheckIns.incrementAndGet();
+            return true;
+        }
+        if (!checkInQueue.offer(new CheckInRequest(userId, confidence))) {
+            submittedCheckIns.remove(userId);
+            rejectedCheckIns.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forget a submitted check-in that was not written, so the next recognition submits it again
+     */
+    public void retractCheckIn(String userId) {
+        submittedCheckIns.remove(userId);
+    }
+
+    /**
+     * Whether a check-in for this student has already been queued by any camera
+     */
+    public boolean isCheckInSubmitted(String userId) {
+        return submittedCheckIns.contains(userId);
+    }
+
+    /**
+     * Write queued check-ins until stopped and the queue is empty
+     */
+    private void runCheckInStage() {
+        while (checkInRunning.get() || !checkInQueue.isEmpty()) {
+            CheckInRequest request;
+            try {
+                request = checkInQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (request == null) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            boolean accepted = false;
+            try {
+                accepted = checkInHandler.checkIn(request.userId, request.confidence);
+            } catch (Exception e) {
+                System.err.println("ERROR: Check-in failed for " + request.userId + " - " + e.getMessage());
+            }
+            if (!accepted) {
+                retractCheckIn(request.userId);
+                rejectedCheckIns.incrementAndGet();
+            }
+            checkInMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    // ========== Metrics ==========
+
+    /**
+     * Most recent recognition results of a camera (empty before its first analysed frame)
+     */
+    public FrameResult getLatestResult(int camera) {
+        return cameras.get(camera).latestResult.get();
+    }
+
+    public StageMetrics getStageMetrics(String stage) {
+        return metrics.get(stage);
+    }
+
+    public long getGrabbedFrames() {
+        return cameras.stream().mapToLong(c -> c.grabbedFrames.get()).sum();
+    }
+
+    public long getAnalysedFrames() {
+        return cameras.stream().mapToLong(c -> c.analysedFrames.get()).sum();
+    }
+
+    /**
+     * Faces recognised (embedded or carried by a track) per second since start, all cameras together
+     */
+    public double getFacesPerSecond() {
+        return perSecond(cameras.stream().mapToLong(c -> c.processedFaces.get()).sum());
+    }
+
+    /**
+     * Faces recognised per second by one camera
+     */
+    public double getFacesPerSecond(int camera) {
+        return perSecond(cameras.get(camera).processedFaces.get());
+    }
+
+    /**
+     * ArcFace embeddings per second since start, all cameras together
+     */
+    public double getEmbeddingsPerSecond() {
+        return perSecond(embeddedFaces.get());
+    }
+
+    private double perSecond(long count) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? count / seconds : 0.0;
+    }
+
+    /**
+     * Multi-line summary: frame counts, queue depths, per-camera throughput and per-stage latency percentiles
+     */
+    public String getMetricsSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("frames grabbed=%d analysed=%d, faces/s=%.1f (embedded %d, tracked %d, embeddings/s=%.1f), queues align=%d embed=%d match=%d checkIn=%d (rejected %d, duplicates %d)",
+                getGrabbedFrames(), getAnalysedFrames(), getFacesPerSecond(), embeddedFaces.get(), trackedFaces.get(),
+                getEmbeddingsPerSecond(), alignQueue.size(), embedQueue.size(), matchQueue.size(), checkInQueue.size(),
+                rejectedCheckIns.get(), duplicateCheckIns.get()));
+        if (cameras.size() > 1) {
+            for (Camera camera : cameras) {
+                summary.append(String.format("%n  camera %d (%s) grabbed=%d analysed=%d faces/s=%.1f",
+                        camera.index, camera.source.getName(), camera.grabbedFrames.get(),
+                        camera.analysedFrames.get(), getFacesPerSecond(camera.index)));
+            }
+        }
+        for (StageMetrics stageMetrics : metrics.values()) {
+            summary.append("\n  ").append(stageMetrics.getSummary());
+        }
+        return summary.toString();
+    }
+}
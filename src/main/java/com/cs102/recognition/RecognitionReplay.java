@@ -0,0 +1,227 @@
+package com.cs102.recognition;
+
+import com.cs102.config.RecognitionConfig;
+import com.cs102.service.RecognitionModelService;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.objdetect.FaceDetectorYN;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless replay of recorded entrances through the live recognition pipeline
+ * Replays video files and/or image directories (one pipeline camera each) against a fixture
+ * gallery and reports faces/sec, per-stage latency percentiles and the students checked in,
+ * so recognition performance can be measured reproducibly without a webcam or a display.
+ *
+ * The gallery directory holds one sub-directory per student, named by user ID, containing that
+ * student's registered face crops (as saved at registration). By default every frame is analysed
+ * as fast as the pipeline allows; --paced replays at the recorded frame rate with adaptive
+ * detection, like a live session.
+ *
+ * Run with:
+ *   java -cp target/classes:DEPENDENCIES com.cs102.recognition.RecognitionReplay \
+ *       GALLERY_DIR VIDEO_FILE|IMAGE_DIR... [--paced] [--width N] [--no-align] [--expect id1,id2,...]
+ */
+public class RecognitionReplay {
+
+    private static final double MATCH_THRESHOLD = 0.5;     // As live recognition
+    private static final int MATCH_TOP_K = 10;
+    private static final double CHECK_IN_CONFIDENCE = 70.0; // Percent, as live recognition
+    private static final double PACED_IMAGE_FPS = 30.0;
+
+    public static void main(String[] args) throws Exception {
+        // Same defaults as application.properties leaves unset
+        RecognitionConfig config = new RecognitionConfig();
+
+        List<String> positional = new ArrayList<>();
+        boolean paced = false;
+        Set<String> expected = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--paced" -> paced = true;
+                case "--width" -> config.getDetection().setWidth(Integer.parseInt(args[++i]));
+                case "--no-align" -> config.getAlignment().setEnabled(false);
+                case "--expect" -> expected = new HashSet<>(Arrays.asList(args[++i].split(",")));
+                default -> positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2) {
+            System.err.println("Usage: RecognitionReplay <gallery-dir> <video-file|image-dir>... "
+                    + "[--paced] [--width N] [--no-align] [--expect id1,id2,...]");
+            System.exit(2);
+        }
+
+        RecognitionModelService models = new RecognitionModelService();
+        try {
+            run(models, config, Path.of(positional.get(0)), positional.subList(1, positional.size()),
+                    paced, expected);
+        } finally {
+            models.close();
+        }
+    }
+
+    private static void run(RecognitionModelService models, RecognitionConfig config, Path galleryDirectory,
+                            List<String> sources, boolean paced, Set<String> expected) throws Exception {
+        ArcFaceRecognizer arcFace = models.getArcFace();
+
+        long start = System.currentTimeMillis();
+        Map<String, float[][]> embeddingsByUser = loadGallery(arcFace, galleryDirectory);
+        EmbeddingGallery gallery = EmbeddingGallery.fromMap(embeddingsByUser);
+        System.out.println("Gallery: " + embeddingsByUser.size() + " students, " + gallery.size()
+                + " embeddings (" + (System.currentTimeMillis() - start) + "ms)");
+
+        RecognitionPipeline pipeline = new RecognitionPipeline(arcFace,
+                embedding -> arcFace.findBestMatch(embedding, gallery, MATCH_THRESHOLD, MATCH_TOP_K));
+        for (String source : sources) {
+            FrameSource frameSource = openSource(source, paced);
+            if (frameSource == null) {
+                continue;
+            }
+            // The detector's input size is set from the first frame
+            FaceDetectorYN detector = models.createFaceDetector(640, 480);
+            if (detector == null) {
+                frameSource.close();
+                throw new IllegalStateException("YuNet face detector unavailable");
+            }
+            pipeline.addCamera(frameSource, detector);
+        }
+        if (pipeline.getCameraCount() == 0) {
+            System.err.println("No readable source");
+            return;
+        }
+
+        // Students checked in, with the time since the replay started
+        Map<String, String> checkIns = new ConcurrentHashMap<>();
+        long[] replayStart = new long[1];
+        pipeline.setCheckInHandler((userId, confidence) -> {
+            checkIns.put(userId, String.format("%.1fs, %.1f%%", (System.nanoTime() - replayStart[0]) / 1e9, confidence));
+            return true;
+        });
+        pipeline.setResultListener(result -> {
+            for (RecognitionPipeline.Recognition recognition : result.recognitions) {
+                if (recognition.match != null
+                        && recognition.match.getConfidencePercentage() >= CHECK_IN_CONFIDENCE) {
+                    pipeline.submitCheckIn(recognition.match.userId, recognition.match.getConfidencePercentage());
+                }
+            }
+        });
+        pipeline.setDetectionWidth(config.getDetection().getWidth());
+        pipeline.setAlignFaces(config.getAlignment().isEnabled());
+        if (paced) {
+            pipeline.setAdaptiveScheduling(true);
+        } else {
+            pipeline.setDetectionIntervalMillis(0);
+        }
+
+        System.out.println("Replaying " + pipeline.getCameraCount() + " source(s), "
+                + (paced ? "paced at the recorded frame rate" : "every frame, unpaced")
+                + ", detection width " + config.getDetection().getWidth()
+                + (config.getAlignment().isEnabled() ? ", aligned" : ", unaligned"));
+        replayStart[0] = System.nanoTime();
+        pipeline.start();
+        while (pipeline.isRunning()) {
+            Thread.sleep(50);
+        }
+
+        // Snapshot throughput before stop, which also writes the last check-ins
+        double seconds = (System.nanoTime() - replayStart[0]) / 1e9;
+        double facesPerSecond = pipeline.getFacesPerSecond();
+        double embeddingsPerSecond = pipeline.getEmbeddingsPerSecond();
+        List<String> perCamera = new ArrayList<>();
+        for (int i = 0; i < pipeline.getCameraCount(); i++) {
+            perCamera.add(String.format("  %s: %.1f faces/s", pipeline.getCameraName(i), pipeline.getFacesPerSecond(i)));
+        }
+        String summary = pipeline.getMetricsSummary();
+        pipeline.stop();
+
+        System.out.println();
+        System.out.println(String.format("Replay finished in %.1fs", seconds));
+        System.out.println(String.format("Faces/sec: %.1f (embeddings/sec %.1f)", facesPerSecond,
+                embeddingsPerSecond));
+        perCamera.forEach(System.out::println);
+        System.out.println("Pipeline (stage latency percentiles): " + summary);
+
+        Map<String, String> sorted = new TreeMap<>(checkIns);
+        System.out.println("Checked in: " + sorted.size() + " students");
+        sorted.forEach((userId, detail) -> System.out.println("  " + userId + " (" + detail + ")"));
+
+        if (expected != null) {
+            Set<String> missing = new HashSet<>(expected);
+            missing.removeAll(sorted.keySet());
+            Set<String> unexpected = new HashSet<>(sorted.keySet());
+            unexpected.removeAll(expected);
+            System.out.println("Expected " + expected.size() + ": missing " + new TreeSet<>(missing)
+                    + ", unexpected " + new TreeSet<>(unexpected));
+        }
+    }
+
+    /**
+     * Video file, or directory of images
+     */
+    private static FrameSource openSource(String source, boolean paced) throws IOException {
+        Path path = Path.of(source);
+        if (Files.isDirectory(path)) {
+            ImageDirectoryFrameSource images = new ImageDirectoryFrameSource(path, paced ? PACED_IMAGE_FPS : 0);
+            System.out.println("Source " + source + ": " + images.getImageCount() + " images");
+            return images;
+        }
+        VideoFileFrameSource video = new VideoFileFrameSource(source, paced);
+        if (!video.isOpened()) {
+            System.err.println("Failed to open video " + source);
+            video.close();
+            return null;
+        }
+        System.out.println(String.format("Source %s: %dx%d at %.1f fps", source, video.getWidth(), video.getHeight(),
+                video.getFps()));
+        return video;
+    }
+
+    /**
+     * Embed every student's registered face crops (one sub-directory per user ID)
+     */
+    private static Map<String, float[][]> loadGallery(ArcFaceRecognizer arcFace, Path directory) throws Exception {
+        Map<String, float[][]> embeddingsByUser = new TreeMap<>();
+        List<Path> students;
+        try (Stream<Path> entries = Files.list(directory)) {
+            students = entries.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+
+        for (Path student : students) {
+            List<Mat> faces = new ArrayList<>();
+            try (Stream<Path> files = Files.list(student)) {
+                for (Path file : files.sorted().collect(Collectors.toList())) {
+                    Mat image = Imgcodecs.imread(file.toString(), Imgcodecs.IMREAD_COLOR);
+                    if (!image.empty()) {
+                        faces.add(arcFace.preprocessFace(image));
+                    }
+                    image.release();
+                }
+            }
+            if (faces.isEmpty()) {
+                continue;
+            }
+            try {
+                embeddingsByUser.put(student.getFileName().toString(), arcFace.extractEmbeddings(faces));
+            } finally {
+                for (Mat face : faces) {
+                    face.release();
+                }
+            }
+        }
+        return embeddingsByUser;
+    }
+}
@@ -0,0 +1,84 @@
+package com.cs102.recognition;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.FaceDetectorYN;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * YuNet detection on a downscaled copy of the frame
+ * Faces at a classroom door or in front of a laptop are large, so YuNet finds them just as well
+ * at ~320px wide, at a fraction of the cost of the full camera resolution. Boxes and landmarks
+ * are mapped back to full-resolution coordinates, so callers crop from the original frame and
+ * ArcFace still sees full-resolution faces.
+ * Not thread-safe: use one instance per detection thread.
+ */
+public class ScaledFaceDetector {
+
+    private final FaceDetectorYN detector;
+    private volatile int detectionWidth;
+    private final Mat scaled = new Mat();
+    private final Mat faces = new Mat();
+    private Size inputSize;
+
+    /**
+     * @param detectionWidth Width to detect at; 0 (or wider than the frame) detects at full resolution
+     */
+    public ScaledFaceDetector(FaceDetectorYN detector, int detectionWidth) {
+        this.detector = detector;
+        this.detectionWidth = detectionWidth;
+    }
+
+    public void setDetectionWidth(int detectionWidth) {
+        this.detectionWidth = detectionWidth;
+    }
+
+    public int getDetectionWidth() {
+        return detectionWidth;
+    }
+
+    /**
+     * Detect faces
+     * @return Detections in the coordinates of the given frame
+     */
+    public List<FaceDetection> detect(Mat frame) {
+        Mat input = frame;
+        double scale = 1.0;
+        if (detectionWidth > 0 && frame.cols() > detectionWidth) {
+            scale = (double) frame.cols() / detectionWidth;
+            int height = (int) Math.round(frame.rows() / scale);
+            Imgproc.resize(frame, scaled, new Size(detectionWidth, height), 0, 0, Imgproc.INTER_AREA);
+            input = scaled;
+        }
+
+        // setInputSize rebuilds YuNet's prior boxes, so only call it when the size changes
+        Size size = input.size();
+        if (inputSize == null || !inputSize.equals(size)) {
+            detector.setInputSize(size);
+            inputSize = size;
+        }
+
+        detector.detect(input, faces);
+        List<FaceDetection> detections = FaceDetection.fromYuNet(faces);
+        if (scale == 1.0) {
+            return detections;
+        }
+
+        List<FaceDetection> fullResolution = new ArrayList<>(detections.size());
+        for (FaceDetection detection : detections) {
+            fullResolution.add(detection.scale(scale));
+        }
+        return fullResolution;
+    }
+
+    /**
+     * Release the scratch buffers
+     */
+    public void release() {
+        scaled.release();
+        faces.release();
+    }
+}
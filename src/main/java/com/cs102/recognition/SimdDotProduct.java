@@ -0,0 +1,79 @@
+package com.cs102.recognition;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD dot product built on the JDK Vector API (jdk.incubator.vector)
+ * Only loaded by {@link VectorMath} after it has checked that the incubator module is present,
+ * so the application still runs when the JVM is started without --add-modules jdk.incubator.vector.
+ */
+final class SimdDotProduct {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // int8 codes are widened into preferred-width float vectors: one byte per float lane, but at
+    // least a 64-bit byte vector, split over several float vectors on 128-bit hardware (NEON, SSE)
+    private static final VectorSpecies<Byte> INT8_SPECIES = VectorSpecies.of(byte.class,
+            VectorShape.forBitSize(Math.max(64, SPECIES.length() * Byte.SIZE)));
+    private static final int INT8_PARTS = INT8_SPECIES.length() / SPECIES.length();
+
+    private SimdDotProduct() {
+    }
+
+    /**
+     * Whether the preferred species actually processes more than one lane at a time
+     */
+    static boolean isSupported() {
+        return SPECIES.length() > 1;
+    }
+
+    static int laneCount() {
+        return SPECIES.length();
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int upperBound = SPECIES.loopBound(length);
+
+        int i = 0;
+        for (; i < upperBound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+
+        // Scalar tail for lengths that are not a multiple of the lane count
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static float dotInt8(float[] a, int aOffset, byte[] codes, int codesOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int upperBound = INT8_SPECIES.loopBound(length);
+
+        int i = 0;
+        for (; i < upperBound; i += INT8_SPECIES.length()) {
+            ByteVector bytes = ByteVector.fromArray(INT8_SPECIES, codes, codesOffset + i);
+            for (int part = 0; part < INT8_PARTS; part++) {
+                FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i + part * SPECIES.length());
+                FloatVector vb = (FloatVector) bytes.convertShape(VectorOperators.B2F, SPECIES, part);
+                acc = va.fma(vb, acc);
+            }
+        }
+
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * codes[codesOffset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,77 @@
+package com.cs102.recognition;
+
+import java.util.Arrays;
+
+/**
+ * Latency statistics for one pipeline stage
+ * Keeps the most recent samples in a fixed ring buffer, so percentiles reflect current
+ * behaviour and recording never allocates.
+ */
+public class StageMetrics {
+
+    private static final int DEFAULT_WINDOW = 512; // Samples kept for percentiles
+
+    private final String name;
+    private final long[] samples;
+    private int next;
+    private int filled;
+    private long count;
+    private long totalNanos;
+
+    public StageMetrics(String name) {
+        this(name, DEFAULT_WINDOW);
+    }
+
+    public StageMetrics(String name, int window) {
+        this.name = name;
+        this.samples = new long[window];
+    }
+
+    /**
+     * Record one processed item
+     */
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        filled = Math.min(filled + 1, samples.length);
+        count++;
+        totalNanos += nanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Items processed since the stage started
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getAverageMillis() {
+        return count == 0 ? 0.0 : totalNanos / (count * 1_000_000.0);
+    }
+
+    /**
+     * Latency percentile over the recent window
+     * @param percentile 0-100
+     */
+    public synchronized double getPercentileMillis(double percentile) {
+        if (filled == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(samples, filled);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * filled) - 1;
+        return sorted[Math.max(0, Math.min(filled - 1, index))] / 1_000_000.0;
+    }
+
+    /**
+     * One-line summary for logging, e.g. "embed n=120 p50=8.1ms p95=12.4ms p99=15.0ms"
+     */
+    public String getSummary() {
+        return String.format("%s n=%d p50=%.1fms p95=%.1fms p99=%.1fms",
+                name, getCount(), getPercentileMillis(50), getPercentileMillis(95), getPercentileMillis(99));
+    }
+}
@@ -0,0 +1,101 @@
+package com.cs102.recognition;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reusable native input buffer for one pooled ONNX session
+ * Faces are normalised by OpenCV convertTo straight into Mats that wrap slices of one direct
+ * buffer, and that same buffer backs the OnnxTensor, so no Java arrays are allocated per face.
+ * Not thread-safe: each instance belongs to one session and is only used while it is borrowed.
+ */
+final class TensorInputBuffer implements AutoCloseable {
+
+    // (pixel - 127.5) / 127.5 expressed as pixel * alpha + beta
+    private static final double ALPHA = 1.0 / 127.5;
+    private static final double BETA = -1.0;
+
+    private final OrtEnvironment env;
+    private final int height;
+    private final int width;
+    private final int faceBytes;
+
+    private ByteBuffer buffer;
+    private int capacity; // Faces
+    private final List<Mat> faceViews = new ArrayList<>(); // One CV_32FC3 Mat per face slot
+    private final Map<Integer, OnnxTensor> tensors = new HashMap<>(); // Batch size -> tensor over the buffer
+
+    TensorInputBuffer(OrtEnvironment env, int height, int width, int channels) {
+        this.env = env;
+        this.height = height;
+        this.width = width;
+        this.faceBytes = height * width * channels * Float.BYTES;
+    }
+
+    /**
+     * Normalise the faces into the buffer and return the tensor over them
+     * The tensor is owned by this buffer and must not be closed by the caller.
+     * @param faces Preprocessed faces (8-bit, 3 channels, height x width)
+     * @return [N, height, width, 3] tensor valid until the next call
+     */
+    OnnxTensor fill(List<Mat> faces) throws OrtException {
+        int batchSize = faces.size();
+        ensureCapacity(batchSize);
+
+        for (int i = 0; i < batchSize; i++) {
+            Mat face = faces.get(i);
+            if (face.rows() != height || face.cols() != width || face.channels() != 3) {
+                throw new IllegalArgumentException("Expected a preprocessed " + width + "x" + height
+                        + "x3 face but got " + face.cols() + "x" + face.rows() + "x" + face.channels());
+            }
+            // Destination already has the right size and type, so convertTo writes into the buffer in place
+            face.convertTo(faceViews.get(i), CvType.CV_32FC3, ALPHA, BETA);
+        }
+
+        OnnxTensor tensor = tensors.get(batchSize);
+        if (tensor == null) {
+            ByteBuffer batchBytes = buffer.slice(0, batchSize * faceBytes).order(ByteOrder.nativeOrder());
+            tensor = OnnxTensor.createTensor(env, batchBytes.asFloatBuffer(), new long[]{batchSize, height, width, 3});
+            tensors.put(batchSize, tensor);
+        }
+        return tensor;
+    }
+
+    private void ensureCapacity(int faces) {
+        if (faces <= capacity) {
+            return;
+        }
+
+        // Views and tensors point at the old buffer, so drop them all
+        close();
+
+        capacity = Math.max(faces, capacity * 2);
+        buffer = ByteBuffer.allocateDirect(capacity * faceBytes).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < capacity; i++) {
+            ByteBuffer faceSlice = buffer.slice(i * faceBytes, faceBytes).order(ByteOrder.nativeOrder());
+            faceViews.add(new Mat(height, width, CvType.CV_32FC3, faceSlice));
+        }
+    }
+
+    @Override
+    public void close() {
+        for (OnnxTensor tensor : tensors.values()) {
+            tensor.close();
+        }
+        tensors.clear();
+        for (Mat view : faceViews) {
+            view.release();
+        }
+        faceViews.clear();
+    }
+}
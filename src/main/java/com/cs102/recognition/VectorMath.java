@@ -0,0 +1,99 @@
+package com.cs102.recognition;
+
+/**
+ * Dot-product kernels used for embedding similarity
+ * Uses the JDK Vector API when the jdk.incubator.vector module is available
+ * (JVM started with --add-modules jdk.incubator.vector) and falls back to a scalar loop otherwise.
+ */
+public final class VectorMath {
+
+    private static final boolean SIMD_ENABLED = detectSimd();
+
+    private VectorMath() {
+    }
+
+    private static boolean detectSimd() {
+        if (Boolean.getBoolean("cs102.simd.disabled")) {
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return SimdDotProduct.isSupported();
+        } catch (Throwable t) {
+            // Module present but unusable on this platform
+            return false;
+        }
+    }
+
+    /**
+     * Whether similarity is computed with SIMD instructions
+     */
+    public static boolean isSimdEnabled() {
+        return SIMD_ENABLED;
+    }
+
+    /**
+     * Short description of the active kernel for logging
+     */
+    public static String describeKernel() {
+        return SIMD_ENABLED
+                ? "Vector API (" + SimdDotProduct.laneCount() + " float lanes)"
+                : "scalar";
+    }
+
+    /**
+     * Dot product of two equal-length vectors
+     */
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Embeddings must have same length");
+        }
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Dot product of {@code length} elements starting at the given offsets
+     * Offsets allow comparing against vectors packed into one large array.
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        if (SIMD_ENABLED) {
+            return SimdDotProduct.dot(a, aOffset, b, bOffset, length);
+        }
+        return scalarDot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Scalar reference implementation (double accumulator, as the original similarity loop)
+     */
+    public static float scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return (float) sum;
+    }
+
+    /**
+     * Dot product of a float vector with int8 codes (unscaled)
+     * Multiply the result by the codes' scale to get the similarity against the dequantized vector.
+     */
+    public static float dotInt8(float[] a, int aOffset, byte[] codes, int codesOffset, int length) {
+        if (SIMD_ENABLED) {
+            return SimdDotProduct.dotInt8(a, aOffset, codes, codesOffset, length);
+        }
+        return scalarDotInt8(a, aOffset, codes, codesOffset, length);
+    }
+
+    /**
+     * Scalar reference implementation of {@link #dotInt8}
+     */
+    public static float scalarDotInt8(float[] a, int aOffset, byte[] codes, int codesOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * codes[codesOffset + i];
+        }
+        return (float) sum;
+    }
+}
@@ -0,0 +1,103 @@
+package com.cs102.recognition;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * Frame source that replays a recorded video file (e.g. a lecture entrance)
+ * Paced replays deliver frames at the recording's frame rate, like a live camera; unpaced
+ * replays are read as fast as the pipeline asks for frames.
+ */
+public class VideoFileFrameSource implements FrameSource {
+
+    private static final double DEFAULT_FPS = 30.0; // Used when the container does not report a rate
+
+    private final VideoCapture capture;
+    private final String path;
+    private final boolean paced;
+    private final double fps;
+    private long framesRead;
+    private long startNanos;
+    private boolean exhausted;
+
+    /**
+     * @param paced true to deliver frames at the recorded frame rate
+     */
+    public VideoFileFrameSource(String path, boolean paced) {
+        this.path = path;
+        this.paced = paced;
+        this.capture = new VideoCapture(path);
+        double reportedFps = capture.isOpened() ? capture.get(Videoio.CAP_PROP_FPS) : 0;
+        this.fps = reportedFps > 0 ? reportedFps : DEFAULT_FPS;
+    }
+
+    @Override
+    public boolean read(Mat frame) {
+        if (exhausted) {
+            return false;
+        }
+        if (paced && framesRead > 0) {
+            // Wait until this frame is due at the recorded frame rate
+            long dueNanos = startNanos + (long) (framesRead * 1_000_000_000L / fps);
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        if (!capture.read(frame) || frame.empty()) {
+            exhausted = true;
+            return false;
+        }
+        if (framesRead == 0) {
+            startNanos = System.nanoTime();
+        }
+        framesRead++;
+        return true;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return !exhausted && capture.isOpened();
+    }
+
+    @Override
+    public String getName() {
+        return "video " + path;
+    }
+
+    @Override
+    public boolean isPaced() {
+        return paced;
+    }
+
+    public int getWidth() {
+        return (int) capture.get(Videoio.CAP_PROP_FRAME_WIDTH);
+    }
+
+    public int getHeight() {
+        return (int) capture.get(Videoio.CAP_PROP_FRAME_HEIGHT);
+    }
+
+    /**
+     * Recorded frame rate (30 if the file does not report one)
+     */
+    public double getFps() {
+        return fps;
+    }
+
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    @Override
+    public void close() {
+        capture.release();
+    }
+}
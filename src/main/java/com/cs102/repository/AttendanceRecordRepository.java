@@ -2,8 +2,12 @@ package com.cs102.repository;
 
 import com.cs102.model.AttendanceRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,6 +24,22 @@ public interface AttendanceRecordRepository extends JpaRepository<AttendanceReco
     // Find a specific student's attendance for a specific session
     Optional<AttendanceRecord> findByUserIdAndSessionId(String userId, UUID sessionId);
 
+    // Check in a batch of students in one statement: insert missing records, fill in records that
+    // have no check-in time yet, leave students already checked in untouched.
+    // Check-in times are Singapore local times; returns the number of rows written.
+    @Modifying
+    @Query(value = "INSERT INTO public.attendance_records "
+            + "(user_id, session_id, checkin_time, attendance, method, created_at, updated_at) "
+            + "SELECT c.user_id, :sessionId, c.checkin_time AT TIME ZONE 'Asia/Singapore', c.attendance, :method, NOW(), NOW() "
+            + "FROM unnest(CAST(:userIds AS varchar[]), CAST(:checkinTimes AS timestamp[]), CAST(:attendances AS varchar[])) "
+            + "AS c(user_id, checkin_time, attendance) "
+            + "ON CONFLICT (user_id, session_id) DO UPDATE "
+            + "SET checkin_time = EXCLUDED.checkin_time, attendance = EXCLUDED.attendance, updated_at = NOW() "
+            + "WHERE attendance_records.checkin_time IS NULL", nativeQuery = true)
+    int upsertCheckIns(@Param("sessionId") UUID sessionId, @Param("method") String method,
+                       @Param("userIds") String[] userIds, @Param("checkinTimes") LocalDateTime[] checkinTimes,
+                       @Param("attendances") String[] attendances);
+
     // Find all attendance records by status (Present, Late, Absent)
     List<AttendanceRecord> findByAttendance(String attendance);
 
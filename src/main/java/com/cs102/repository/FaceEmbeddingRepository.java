@@ -0,0 +1,44 @@
+package com.cs102.repository;
+
+import com.cs102.model.FaceEmbedding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface FaceEmbeddingRepository extends JpaRepository<FaceEmbedding, UUID> {
+
+    // Find all embeddings for a student produced by a specific model version
+    List<FaceEmbedding> findByUserIdAndModelHash(String userId, String modelHash);
+
+    // Bulk-load embeddings for a whole roster in one query
+    List<FaceEmbedding> findByUserIdInAndModelHash(Collection<String> userIds, String modelHash);
+
+    // Load every embedding for a model version (campus-wide index)
+    List<FaceEmbedding> findByModelHash(String modelHash);
+
+    // Count embeddings for a model version
+    long countByModelHash(String modelHash);
+
+    // Count plus a digest of every row ID for a model version, used to detect a stale on-disk index
+    // (rows are only ever inserted or deleted, and each insert gets a new ID)
+    @Query(value = "SELECT COUNT(*) || ':' || COALESCE(md5(string_agg(id::text, ',' ORDER BY id)), '') "
+            + "FROM public.face_embeddings WHERE model_hash = :modelHash", nativeQuery = true)
+    String fingerprintByModelHash(@Param("modelHash") String modelHash);
+
+    // Delete all embeddings for a student (any model version)
+    void deleteByUserId(String userId);
+
+    // Delete embeddings produced by any other model version (they can never be matched again)
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM public.face_embeddings WHERE model_hash <> :modelHash", nativeQuery = true)
+    int deleteByModelHashNot(@Param("modelHash") String modelHash);
+}
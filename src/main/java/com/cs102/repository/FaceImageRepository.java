@@ -4,11 +4,13 @@ import com.cs102.model.FaceImage;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface FaceImageRepository extends JpaRepository<FaceImage, UUID> {
     List<FaceImage> findByUserId(String userId);
+    List<FaceImage> findByUserIdIn(Collection<String> userIds);
     void deleteByUserId(String userId);
 }
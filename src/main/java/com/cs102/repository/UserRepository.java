@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -16,6 +17,9 @@ public interface UserRepository extends JpaRepository<User, String> {  // Change
     @Query(value = "SELECT * FROM public.profiles WHERE user_id = :userId LIMIT 1", nativeQuery = true)
     Optional<User> findByUserId(@Param("userId") String userId);
 
+    @Query(value = "SELECT * FROM public.profiles WHERE user_id IN (:userIds)", nativeQuery = true)
+    List<User> findByUserIdIn(@Param("userIds") Collection<String> userIds);
+
     @Query(value = "SELECT * FROM public.profiles WHERE database_id = :databaseId LIMIT 1", nativeQuery = true)
     Optional<User> findByDatabaseId(@Param("databaseId") UUID databaseId);
 
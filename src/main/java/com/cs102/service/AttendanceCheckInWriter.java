@@ -0,0 +1,274 @@
+package com.cs102.service;
+
+import com.cs102.manager.DatabaseManager;
+import com.cs102.model.AttendanceRecord;
+import com.cs102.recognition.StageMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind queue for automatic check-ins
+ * Live recognition hands check-ins to a bounded queue and returns immediately; a dedicated
+ * writer thread collects everything that arrives within a short window, drops repeats of the
+ * same student and session, and commits the batch in one transaction. Transient database
+ * failures (connection drops, timeouts) are retried with back-off, so a network blip on the
+ * way to Supabase does not lose a check-in or freeze the camera preview. Check-ins that still
+ * cannot be written are handed to the registered failure listeners, so the live session can
+ * undo them and check the students in again.
+ */
+@Service
+public class AttendanceCheckInWriter {
+
+    private static final long POLL_MILLIS = 100;          // Writer wake-up interval when idle
+    private static final long RETRY_BASE_MILLIS = 250;    // First retry delay, doubled per attempt
+
+    @Autowired
+    private DatabaseManager databaseManager;
+
+    @Value("${attendance.checkin.queue-capacity:1024}")
+    private int queueCapacity;
+
+    @Value("${attendance.checkin.batch-size:64}")
+    private int maxBatchSize;
+
+    @Value("${attendance.checkin.batch-window-ms:100}")
+    private long batchWindowMillis;
+
+    @Value("${attendance.checkin.max-retries:3}")
+    private int maxRetries;
+
+    /**
+     * Told about check-ins the writer gave up on; called on the writer thread
+     */
+    @FunctionalInterface
+    public interface FailureListener {
+        void onFailure(List<AttendanceRecord> checkIns, Exception error);
+    }
+
+    private final List<FailureListener> failureListeners = new CopyOnWriteArrayList<>();
+    private BlockingQueue<AttendanceRecord> queue;
+    private Thread writerThread;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile int inFlight; // Check-ins taken from the queue but not yet committed
+
+    // Metrics
+    private final StageMetrics commitMetrics = new StageMetrics("commit");
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running.set(true);
+        writerThread = new Thread(this::runWriter, "AttendanceCheckInWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stop the writer after committing everything still queued
+     */
+    @PreDestroy
+    public void stop() {
+        running.set(false);
+        if (writerThread != null) {
+            try {
+                writerThread.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Queue a check-in
+     * Waits up to the given time if the queue is full.
+     * @param method "Auto", "Manual" or "Self"
+     * @return true if queued
+     */
+    public boolean submit(String userId, UUID sessionId, String attendance, String method,
+                          LocalDateTime checkinTime, long timeoutMillis) throws InterruptedException {
+        AttendanceRecord checkIn = new AttendanceRecord(userId, sessionId, attendance, method);
+        checkIn.setCheckinTime(checkinTime);
+        return queue.offer(checkIn, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void addFailureListener(FailureListener listener) {
+        failureListeners.add(listener);
+    }
+
+    public void removeFailureListener(FailureListener listener) {
+        failureListeners.remove(listener);
+    }
+
+    /**
+     * Wait until every queued check-in has been committed (or given up on)
+     * @return true if the queue drained within the timeout
+     */
+    public boolean flush(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!queue.isEmpty() || inFlight > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    private void runWriter() {
+        List<AttendanceRecord> drained = new ArrayList<>();
+        while (running.get() || !queue.isEmpty()) {
+            try {
+                AttendanceRecord first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                inFlight = 1;
+
+                // Let a burst of students at the door arrive, then take them all at once
+                if (running.get() && batchWindowMillis > 0) {
+                    Thread.sleep(batchWindowMillis);
+                }
+                drained.clear();
+                drained.add(first);
+                queue.drainTo(drained, maxBatchSize - 1);
+                inFlight = drained.size();
+
+                commit(coalesce(drained));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                inFlight = 0;
+            }
+        }
+    }
+
+    /**
+     * Keep the first check-in of each student and session
+     */
+    private List<AttendanceRecord> coalesce(List<AttendanceRecord> checkIns) {
+        Map<String, AttendanceRecord> unique = new LinkedHashMap<>();
+        for (AttendanceRecord checkIn : checkIns) {
+            unique.putIfAbsent(checkIn.getSessionId() + "/" + checkIn.getUserId(), checkIn);
+        }
+        coalesced.addAndGet(checkIns.size() - unique.size());
+        return new ArrayList<>(unique.values());
+    }
+
+    private void commit(List<AttendanceRecord> batch) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                int written = databaseManager.saveCheckIns(batch);
+                commitMetrics.record(System.nanoTime() - start);
+                committed.addAndGet(batch.size());
+                System.out.println("Committed " + batch.size() + " check-in(s) (" + written + " written) in "
+                        + (System.nanoTime() - start) / 1_000_000 + "ms");
+                return;
+            } catch (Exception e) {
+                if (!isTransient(e) || attempt >= maxRetries) {
+                    failed.addAndGet(batch.size());
+                    List<String> userIds = batch.stream().map(AttendanceRecord::getUserId).toList();
+                    System.err.println("ERROR: Failed to commit check-ins " + userIds + " - " + e.getMessage());
+                    for (FailureListener listener : failureListeners) {
+                        try {
+                            listener.onFailure(batch, e);
+                        } catch (Exception listenerError) {
+                            System.err.println("Check-in failure listener failed: " + listenerError.getMessage());
+                        }
+                    }
+                    return;
+                }
+                retries.incrementAndGet();
+                long delay = RETRY_BASE_MILLIS << attempt;
+                System.err.println("Check-in commit failed (" + e.getMessage() + "), retrying in " + delay + "ms");
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Connection drops, timeouts and lock conflicts are worth retrying; constraint or mapping errors are not
+     */
+    private static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ========== Metrics ==========
+
+    /**
+     * Check-ins waiting to be committed (queued plus the batch being written)
+     */
+    public int getQueueDepth() {
+        return queue.size() + inFlight;
+    }
+
+    public StageMetrics getCommitMetrics() {
+        return commitMetrics;
+    }
+
+    public long getCommittedCount() {
+        return committed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * Short status for the UI, e.g. "Check-ins: 12 committed, queue 0, commit p50 45ms p95 120ms"
+     */
+    public String describe() {
+        StringBuilder status = new StringBuilder(String.format("Check-ins: %d committed, queue %d, commit p50 %.0fms p95 %.0fms",
+                committed.get(), getQueueDepth(), commitMetrics.getPercentileMillis(50),
+                commitMetrics.getPercentileMillis(95)));
+        if (retries.get() > 0) {
+            status.append(", ").append(retries.get()).append(" retries");
+        }
+        if (failed.get() > 0) {
+            status.append(", ").append(failed.get()).append(" failed");
+        }
+        return status.toString();
+    }
+
+    /**
+     * Log line with counters and commit latency percentiles
+     */
+    public String getMetricsSummary() {
+        return String.format("committed=%d coalesced=%d retries=%d failed=%d queue=%d, %s",
+                committed.get(), coalesced.get(), retries.get(), failed.get(), getQueueDepth(),
+                commitMetrics.getSummary());
+    }
+}
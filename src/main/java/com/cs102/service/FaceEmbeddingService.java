@@ -0,0 +1,301 @@
+package com.cs102.service;
+
+import com.cs102.config.RecognitionConfig;
+import com.cs102.model.FaceEmbedding;
+import com.cs102.model.FaceImage;
+import com.cs102.recognition.ArcFaceRecognizer;
+import com.cs102.recognition.HnswIndex;
+import com.cs102.repository.FaceEmbeddingRepository;
+import com.cs102.repository.FaceImageRepository;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes and stores ArcFace embeddings for registered faces
+ * Embeddings are computed once at registration and versioned by model hash and preprocessing mode,
+ * so starting live recognition only needs one bulk read instead of decoding and embedding every JPEG.
+ */
+@Service
+public class FaceEmbeddingService {
+
+    @Autowired
+    private FaceEmbeddingRepository faceEmbeddingRepository;
+
+    @Autowired
+    private FaceImageRepository faceImageRepository;
+
+    @Autowired
+    private RecognitionModelService recognitionModelService;
+
+    @Autowired
+    private RecognitionConfig recognitionConfig;
+
+    // HNSW knobs for the campus-wide index (recall vs latency)
+    @Value("${recognition.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${recognition.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${recognition.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    @Value("${recognition.hnsw.index-file:#{systemProperties['user.home'] + '/.cs102/face-index.hnsw'}}")
+    private String hnswIndexFile;
+
+    /**
+     * Get the shared recognizer used for registration-time embeddings
+     */
+    public ArcFaceRecognizer getRecognizer() throws Exception {
+        return recognitionModelService.getArcFace();
+    }
+
+    /**
+     * Version key stored with every embedding: the ArcFace model hash plus the preprocessing mode
+     * Aligned and unaligned crops of the same face embed differently, so each mode keeps its own
+     * rows. Unaligned keeps the bare model hash carried by embeddings stored before alignment
+     * existed; the aligned key is hashed again so it still fits the 64-character model_hash column.
+     */
+    public String getEmbeddingVersion() throws Exception {
+        String modelHash = getRecognizer().getModelHash();
+        if (!recognitionConfig.getAlignment().isEnabled()) {
+            return modelHash;
+        }
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        return HexFormat.of().formatHex(digest.digest((modelHash + ":aligned").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Compute embeddings for encoded face images (JPEG bytes from registration)
+     * @param faceImages Encoded 112x112 BGR face crops
+     * @return One embedding per image, in input order; null where the image could not be decoded
+     */
+    public List<float[]> computeEmbeddings(List<byte[]> faceImages) throws Exception {
+        ArcFaceRecognizer arcFace = getRecognizer();
+
+        List<Integer> decodedIndexes = new ArrayList<>();
+        List<Mat> preprocessedFaces = new ArrayList<>();
+        for (int i = 0; i < faceImages.size(); i++) {
+            Mat faceMat = Imgcodecs.imdecode(new MatOfByte(faceImages.get(i)), Imgcodecs.IMREAD_COLOR);
+            if (faceMat != null && !faceMat.empty()) {
+                preprocessedFaces.add(arcFace.preprocessFace(faceMat));
+                decodedIndexes.add(i);
+                faceMat.release();
+            } else {
+                System.err.println("Failed to decode face image #" + (i + 1));
+            }
+        }
+
+        List<float[]> embeddings = new ArrayList<>();
+        for (int i = 0; i < faceImages.size(); i++) {
+            embeddings.add(null);
+        }
+
+        try {
+            float[][] computed = arcFace.extractEmbeddings(preprocessedFaces);
+            for (int i = 0; i < computed.length; i++) {
+                embeddings.set(decodedIndexes.get(i), computed[i]);
+            }
+        } finally {
+            for (Mat preprocessed : preprocessedFaces) {
+                preprocessed.release();
+            }
+        }
+
+        return embeddings;
+    }
+
+    /**
+     * Replace a student's stored embeddings
+     * Must be called inside a transaction (e.g. from DatabaseManager.saveFaceImages); failures
+     * propagate so the whole registration rolls back.
+     * @param embeddings One embedding per face image; null entries are skipped
+     */
+    public void replaceEmbeddings(String userId, List<float[]> embeddings) throws Exception {
+        String modelHash = getEmbeddingVersion();
+
+        faceEmbeddingRepository.deleteByUserId(userId);
+
+        List<FaceEmbedding> rows = new ArrayList<>();
+        for (int i = 0; i < embeddings.size(); i++) {
+            if (embeddings.get(i) != null) {
+                rows.add(new FaceEmbedding(userId, i + 1, modelHash, embeddings.get(i)));
+            }
+        }
+        faceEmbeddingRepository.saveAll(rows);
+        invalidateCampusIndex();
+
+        System.out.println("Saved " + rows.size() + " face embeddings for student: " + userId);
+    }
+
+    /**
+     * Delete all stored embeddings for a student
+     */
+    public void deleteEmbeddings(String userId) {
+        faceEmbeddingRepository.deleteByUserId(userId);
+        invalidateCampusIndex();
+    }
+
+    /**
+     * Delete embeddings stored under any other model or preprocessing mode than the current one
+     * Only run as an explicit admin action once every machine sharing the database has been
+     * upgraded: a machine still on an older model would otherwise lose its gallery.
+     * @return Number of rows deleted
+     */
+    public int purgeOtherModelEmbeddings() throws Exception {
+        int purged = faceEmbeddingRepository.deleteByModelHashNot(getEmbeddingVersion());
+        System.out.println("Deleted " + purged + " face embeddings of other ArcFace models");
+        return purged;
+    }
+
+    /**
+     * Load embeddings for a whole roster with one query
+     * Students registered before embeddings were stored (or under an older model) are
+     * embedded from their face images once and written back, so later loads are pure reads.
+     * @param userIds Students to load
+     * @return Map of userId to that student's embeddings; students without face data are absent
+     */
+    public Map<String, float[][]> loadEmbeddings(Collection<String> userIds) throws Exception {
+        Map<String, float[][]> result = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return result;
+        }
+
+        String modelHash = getEmbeddingVersion();
+
+        // One bulk read for the whole roster
+        Map<String, List<float[]>> grouped = new HashMap<>();
+        for (FaceEmbedding row : faceEmbeddingRepository.findByUserIdInAndModelHash(userIds, modelHash)) {
+            grouped.computeIfAbsent(row.getUserId(), k -> new ArrayList<>()).add(row.getVector());
+        }
+        for (Map.Entry<String, List<float[]>> entry : grouped.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray(new float[0][]));
+        }
+
+        // Backfill students that have face images but no embeddings for this model
+        Set<String> missing = new HashSet<>(userIds);
+        missing.removeAll(result.keySet());
+        if (!missing.isEmpty()) {
+            result.putAll(backfillEmbeddings(missing, modelHash));
+        }
+
+        System.out.println("Loaded embeddings for " + result.size() + "/" + userIds.size() + " students ("
+                + grouped.size() + " precomputed, " + (result.size() - grouped.size()) + " backfilled)");
+        return result;
+    }
+
+    /**
+     * Compute and store embeddings from face images for students that have none yet
+     */
+    private Map<String, float[][]> backfillEmbeddings(Set<String> userIds, String modelHash) throws Exception {
+        Map<String, List<FaceImage>> imagesByUser = new HashMap<>();
+        for (FaceImage faceImage : faceImageRepository.findByUserIdIn(userIds)) {
+            imagesByUser.computeIfAbsent(faceImage.getUserId(), k -> new ArrayList<>()).add(faceImage);
+        }
+
+        Map<String, float[][]> result = new HashMap<>();
+        List<FaceEmbedding> rows = new ArrayList<>();
+        for (Map.Entry<String, List<FaceImage>> entry : imagesByUser.entrySet()) {
+            String userId = entry.getKey();
+            List<FaceImage> faceImages = entry.getValue();
+
+            List<byte[]> imageData = new ArrayList<>();
+            for (FaceImage faceImage : faceImages) {
+                imageData.add(faceImage.getImageData());
+            }
+
+            List<float[]> embeddings = computeEmbeddings(imageData);
+            List<float[]> valid = new ArrayList<>();
+            for (int i = 0; i < embeddings.size(); i++) {
+                if (embeddings.get(i) != null) {
+                    valid.add(embeddings.get(i));
+                    rows.add(new FaceEmbedding(userId, faceImages.get(i).getImageNumber(), modelHash, embeddings.get(i)));
+                }
+            }
+
+            if (!valid.isEmpty()) {
+                result.put(userId, valid.toArray(new float[0][]));
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            faceEmbeddingRepository.saveAll(rows);
+            invalidateCampusIndex();
+            System.out.println("Backfilled " + rows.size() + " face embeddings for " + result.size() + " students");
+        }
+        return result;
+    }
+
+    /**
+     * Delete the local campus index file after this application changed the stored embeddings
+     * Changes made elsewhere are caught by the fingerprint check in {@link #loadCampusIndex()}.
+     */
+    private void invalidateCampusIndex() {
+        try {
+            Files.deleteIfExists(Paths.get(hnswIndexFile));
+        } catch (IOException e) {
+            System.err.println("Failed to delete HNSW index " + hnswIndexFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load the campus-wide HNSW index over every stored embedding
+     * The index is read from the local index file when it matches the current model and the
+     * fingerprint (row count and digest of row IDs) of the stored embeddings; otherwise it is
+     * rebuilt from the database and saved for the next launch.
+     */
+    public HnswIndex loadCampusIndex() throws Exception {
+        String modelHash = getEmbeddingVersion();
+        Path indexFile = Paths.get(hnswIndexFile);
+        String fingerprint = faceEmbeddingRepository.fingerprintByModelHash(modelHash);
+        long storedCount = faceEmbeddingRepository.countByModelHash(modelHash);
+
+        HnswIndex index = HnswIndex.load(indexFile, modelHash, fingerprint);
+        if (index != null && index.getLiveSize() == storedCount) {
+            index.setEfSearch(hnswEfSearch);
+            System.out.println("Loaded HNSW index from " + indexFile + " (" + index.size() + " embeddings, "
+                    + index.getUserCount() + " students)");
+            return index;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, List<float[]>> grouped = new HashMap<>();
+        for (FaceEmbedding row : faceEmbeddingRepository.findByModelHash(modelHash)) {
+            grouped.computeIfAbsent(row.getUserId(), k -> new ArrayList<>()).add(row.getVector());
+        }
+        Map<String, float[][]> embeddingsByUser = new HashMap<>();
+        for (Map.Entry<String, List<float[]>> entry : grouped.entrySet()) {
+            embeddingsByUser.put(entry.getKey(), entry.getValue().toArray(new float[0][]));
+        }
+
+        index = HnswIndex.build(embeddingsByUser, hnswM, hnswEfConstruction, hnswEfSearch);
+        System.out.println("Built HNSW index (" + index.size() + " embeddings, " + index.getUserCount()
+                + " students) in " + (System.currentTimeMillis() - start) + "ms");
+
+        try {
+            index.save(indexFile, modelHash, fingerprint);
+        } catch (Exception e) {
+            System.err.println("Failed to save HNSW index to " + indexFile + ": " + e.getMessage());
+        }
+        return index;
+    }
+}
@@ -0,0 +1,189 @@
+package com.cs102.service;
+
+import com.cs102.manager.DatabaseManager;
+import com.cs102.model.AttendanceRecord;
+import com.cs102.model.Session;
+import com.cs102.model.User;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory state of one live recognition session
+ * Loaded once when recognition starts: the enrolled roster, the professor's late threshold and
+ * which students are already checked in. Check-in decisions (is this student on the roster, are
+ * they checked in already, Present or Late) are then memory lookups instead of database reads
+ * for every recognised face. The late threshold can optionally be re-read periodically so a
+ * change in Settings during the session still applies.
+ */
+public class LiveSessionState {
+
+    public static final ZoneId SESSION_ZONE = ZoneId.of("Asia/Singapore");
+
+    private final DatabaseManager databaseManager;
+    private final Session session;
+    private final String professorId;
+    private final ZonedDateTime sessionStart;
+
+    private final List<String> roster;                 // Enrolled user IDs, index = bit in checkedIn
+    private final Map<String, Integer> rosterIndex;
+    private final BitSet checkedIn;
+    private volatile int lateThresholdMinutes;
+
+    private ScheduledExecutorService refresher;
+
+    private LiveSessionState(DatabaseManager databaseManager, Session session, String professorId,
+                             List<String> roster, int lateThresholdMinutes) {
+        this.databaseManager = databaseManager;
+        this.session = session;
+        this.professorId = professorId;
+        this.sessionStart = ZonedDateTime.of(session.getDate(), session.getStartTime(), SESSION_ZONE);
+        this.roster = Collections.unmodifiableList(roster);
+        this.rosterIndex = new HashMap<>();
+        for (int i = 0; i < roster.size(); i++) {
+            rosterIndex.put(roster.get(i), i);
+        }
+        this.checkedIn = new BitSet(roster.size());
+        this.lateThresholdMinutes = lateThresholdMinutes;
+    }
+
+    /**
+     * Load the roster, late threshold and existing check-ins of a session (three queries)
+     * @param professorId Professor whose late threshold applies
+     */
+    public static LiveSessionState load(DatabaseManager databaseManager, Session session, String professorId) {
+        List<String> roster = new ArrayList<>();
+        for (com.cs102.model.Class enrollment : databaseManager.findEnrollmentsByCourseAndSection(
+                session.getCourse(), session.getSection())) {
+            roster.add(enrollment.getUserId());
+        }
+
+        int lateThreshold = databaseManager.findUserByUserId(professorId).map(User::getLateThreshold).orElse(15);
+        LiveSessionState state = new LiveSessionState(databaseManager, session, professorId, roster, lateThreshold);
+
+        for (AttendanceRecord record : databaseManager.findAttendanceBySessionId(session.getId())) {
+            if (record.getCheckinTime() != null) {
+                Integer index = state.rosterIndex.get(record.getUserId());
+                if (index != null) {
+                    state.checkedIn.set(index);
+                }
+            }
+        }
+
+        System.out.println("Live session state loaded: " + roster.size() + " enrolled, "
+                + state.getCheckedInCount() + " already checked in, late after " + lateThreshold + " minutes");
+        return state;
+    }
+
+    /**
+     * Re-read the late threshold in the background every given number of seconds
+     */
+    public synchronized void startPeriodicRefresh(long periodSeconds) {
+        if (refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LiveSessionState-Refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshLateThreshold, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Re-read the professor's late threshold
+     */
+    public void refreshLateThreshold() {
+        try {
+            Optional<User> professor = databaseManager.findUserByUserId(professorId);
+            if (professor.isPresent() && professor.get().getLateThreshold() != lateThresholdMinutes) {
+                lateThresholdMinutes = professor.get().getLateThreshold();
+                System.out.println("Late threshold changed to " + lateThresholdMinutes + " minutes");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to refresh late threshold: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the periodic refresh
+     */
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    // ========== Check-in decisions ==========
+
+    public boolean isEnrolled(String userId) {
+        return rosterIndex.containsKey(userId);
+    }
+
+    public synchronized boolean isCheckedIn(String userId) {
+        Integer index = rosterIndex.get(userId);
+        return index != null && checkedIn.get(index);
+    }
+
+    /**
+     * Mark an enrolled student as checked in
+     * @return true if the student is enrolled and was not checked in yet
+     */
+    public synchronized boolean markCheckedIn(String userId) {
+        Integer index = rosterIndex.get(userId);
+        if (index == null || checkedIn.get(index)) {
+            return false;
+        }
+        checkedIn.set(index);
+        return true;
+    }
+
+    /**
+     * Undo a check-in that could not be queued or written, so a later recognition retries it
+     */
+    public synchronized void clearCheckedIn(String userId) {
+        Integer index = rosterIndex.get(userId);
+        if (index != null) {
+            checkedIn.clear(index);
+        }
+    }
+
+    /**
+     * "Present" up to the late threshold after the session start, "Late" afterwards
+     */
+    public String getAttendanceStatus(ZonedDateTime checkinTime) {
+        return checkinTime.isAfter(sessionStart.plusMinutes(lateThresholdMinutes)) ? "Late" : "Present";
+    }
+
+    // ========== Accessors ==========
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * Enrolled user IDs
+     */
+    public List<String> getRoster() {
+        return roster;
+    }
+
+    public int getLateThresholdMinutes() {
+        return lateThresholdMinutes;
+    }
+
+    public synchronized int getCheckedInCount() {
+        return checkedIn.cardinality();
+    }
+}
@@ -0,0 +1,185 @@
+package com.cs102.service;
+
+import com.cs102.manager.DatabaseManager;
+import com.cs102.model.Class;
+import com.cs102.model.User;
+import com.cs102.model.UserRole;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports a class roster from a CSV file with a fixed number of queries
+ * The file is streamed line by line, every student ID is resolved with one IN query, the class
+ * enrollments are fetched once and diffed in memory, and only the new enrollments are inserted,
+ * in one batch. Every rejected row is reported with its line number.
+ */
+@Service
+public class RosterImportService {
+
+    private static final int LOOKUP_CHUNK_SIZE = 5000; // IDs per IN query (stays below Postgres' parameter limit)
+
+    @Autowired
+    private DatabaseManager databaseManager;
+
+    /**
+     * One rejected CSV row
+     */
+    public static class RowError {
+        public final int lineNumber;
+        public final String studentId;
+        public final String message;
+
+        public RowError(int lineNumber, String studentId, String message) {
+            this.lineNumber = lineNumber;
+            this.studentId = studentId;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + message;
+        }
+    }
+
+    /**
+     * Outcome of an import
+     */
+    public static class ImportResult {
+        private int added;
+        private int alreadyEnrolled;
+        private int duplicates;
+        private final List<RowError> errors = new ArrayList<>();
+        private long elapsedMillis;
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getAlreadyEnrolled() {
+            return alreadyEnrolled;
+        }
+
+        /**
+         * Rows repeating a student ID that appeared earlier in the same file
+         */
+        public int getDuplicates() {
+            return duplicates;
+        }
+
+        public List<RowError> getErrors() {
+            return errors;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+    }
+
+    /**
+     * Enroll every student listed in a CSV file
+     * The student ID is the first column; an optional header line (the first line, containing
+     * "student" or "id" in any column) and blank lines are skipped.
+     */
+    public ImportResult importRoster(Reader csv, String course, String section) throws IOException {
+        long start = System.currentTimeMillis();
+        ImportResult result = new ImportResult();
+
+        // Stream the file: first line number of each distinct student ID
+        Map<String, Integer> rows = new LinkedHashMap<>();
+        BufferedReader reader = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+        String line;
+        int lineNumber = 0;
+        boolean firstRow = true;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String studentId = parseStudentId(line);
+            if (studentId.isEmpty()) {
+                continue;
+            }
+            if (firstRow) {
+                firstRow = false;
+                // Header test on the whole line, e.g. "Name,StudentID"
+                String lower = line.toLowerCase();
+                if (lower.contains("student") || lower.contains("id")) {
+                    continue; // Header
+                }
+            }
+            if (rows.putIfAbsent(studentId, lineNumber) != null) {
+                result.duplicates++;
+            }
+        }
+
+        // Resolve every ID at once
+        Map<String, User> users = new HashMap<>();
+        List<String> ids = new ArrayList<>(rows.keySet());
+        for (int i = 0; i < ids.size(); i += LOOKUP_CHUNK_SIZE) {
+            for (User user : databaseManager.findUsersByUserIds(ids.subList(i, Math.min(ids.size(), i + LOOKUP_CHUNK_SIZE)))) {
+                users.put(user.getUserId(), user);
+            }
+        }
+
+        // Diff against the current enrollments
+        Set<String> enrolled = new HashSet<>();
+        for (Class enrollment : databaseManager.findEnrollmentsByCourseAndSection(course, section)) {
+            enrolled.add(enrollment.getUserId());
+        }
+
+        List<Class> newEnrollments = new ArrayList<>();
+        for (Map.Entry<String, Integer> row : rows.entrySet()) {
+            String studentId = row.getKey();
+            User user = users.get(studentId);
+            if (user == null) {
+                result.errors.add(new RowError(row.getValue(), studentId, "Student ID " + studentId + " not found"));
+            } else if (user.getRole() != UserRole.STUDENT) {
+                result.errors.add(new RowError(row.getValue(), studentId,
+                        studentId + " has role '" + user.getRole() + "', not 'STUDENT'"));
+            } else if (enrolled.contains(studentId)) {
+                result.alreadyEnrolled++;
+            } else {
+                newEnrollments.add(new Class(course, section, studentId));
+            }
+        }
+
+        if (!newEnrollments.isEmpty()) {
+            databaseManager.saveClassEnrollments(newEnrollments);
+        }
+        result.added = newEnrollments.size();
+        result.elapsedMillis = System.currentTimeMillis() - start;
+
+        System.out.println("Roster import " + course + "-" + section + ": " + rows.size() + " students, "
+                + result.added + " added, " + result.alreadyEnrolled + " already enrolled, "
+                + result.errors.size() + " errors in " + result.elapsedMillis + "ms");
+        return result;
+    }
+
+    /**
+     * First column of a CSV line, without surrounding whitespace or quotes
+     */
+    private static String parseStudentId(String line) {
+        String studentId = line;
+        // Byte order mark written by Excel
+        if (studentId.startsWith("\uFEFF")) {
+            studentId = studentId.substring(1);
+        }
+        int comma = studentId.indexOf(',');
+        if (comma >= 0) {
+            studentId = studentId.substring(0, comma);
+        }
+        studentId = studentId.trim();
+        if (studentId.length() >= 2 && studentId.startsWith("\"") && studentId.endsWith("\"")) {
+            studentId = studentId.substring(1, studentId.length() - 1).trim();
+        }
+        return studentId;
+    }
+}
@@ -396,7 +396,10 @@ public class AdminView {
         Button usersBtn = createActionButton("Manage Users", "#9b59b6");
         usersBtn.setOnAction(e -> navigateTo("Users"));
 
-        actions.getChildren().addAll(exportBtn, reportsBtn, usersBtn);
+        Button purgeBtn = createActionButton("Purge Old Embeddings", "#e67e22");
+        purgeBtn.setOnAction(e -> purgeStaleEmbeddings());
+
+        actions.getChildren().addAll(exportBtn, reportsBtn, usersBtn, purgeBtn);
         return actions;
     }
 
@@ -742,6 +745,26 @@ public class AdminView {
         }
     }
 
+    // Embeddings from other model versions are kept until an admin drops them, since lab
+    // machines sharing this database may not all run the same model yet
+    private void purgeStaleEmbeddings() {
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("Purge Old Embeddings");
+        confirm.setHeaderText(null);
+        confirm.setContentText("Delete face embeddings computed by other face recognition models?\n"
+                + "Only do this once every machine has been upgraded to this model.");
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            return;
+        }
+
+        try {
+            int purged = dbManager.purgeStaleFaceEmbeddings();
+            showAlert(Alert.AlertType.INFORMATION, "Success", "Deleted " + purged + " old face embeddings.");
+        } catch (Exception e) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Failed to purge embeddings: " + e.getMessage());
+        }
+    }
+
     private void exportByDateRange() {
         // Create dialog for date range selection
         Dialog<LocalDate[]> dialog = new Dialog<>();
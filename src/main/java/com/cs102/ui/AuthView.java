@@ -293,6 +293,8 @@ public class AuthView {
                 // Step 1: For STUDENTS, capture face images first
                 FaceCaptureView faceCaptureView = new FaceCaptureView(
                     stage,
+                    authManager.getRecognitionModelService(),
+                    authManager.getRecognitionConfig(),
                     (capturedFaces) -> {
                         // Step 2: After face capture is complete, register the user
                         clearPendingRegistration(); // Clear saved data on success
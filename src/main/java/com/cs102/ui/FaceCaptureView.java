@@ -1,5 +1,11 @@
 package com.cs102.ui;
 
+import com.cs102.config.RecognitionConfig;
+import com.cs102.recognition.AdaptiveDetectionScheduler;
+import com.cs102.recognition.FaceAligner;
+import com.cs102.recognition.FaceDetection;
+import com.cs102.recognition.ScaledFaceDetector;
+import com.cs102.service.RecognitionModelService;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -8,7 +14,6 @@ import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
@@ -24,7 +29,6 @@ import org.opencv.imgproc.Imgproc;
 import org.opencv.objdetect.FaceDetectorYN;
 import org.opencv.videoio.VideoCapture;
 
-import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
@@ -32,8 +36,11 @@ import java.util.function.Consumer;
 public class FaceCaptureView {
 
     private VideoCapture camera;
-    private FaceDetectorYN faceDetector;
+    private ScaledFaceDetector faceDetector; // Shared by the detection and capture threads; synchronize on it
+    private final RecognitionModelService modelService;
+    private final RecognitionConfig recognitionConfig;
     private ImageView imageView;
+    private FramePresenter framePresenter;
     private volatile boolean isCapturing = false;
     private Thread captureThread;
     private Thread detectionThread;
@@ -43,7 +50,8 @@ public class FaceCaptureView {
     private Label statusLabel;
     private Label faceDetectionLabel;
     private volatile Mat latestFrame = null;
-    private volatile Mat latestFaceDetections = null;
+    private volatile List<FaceDetection> latestFaceDetections = null;
+    private final AdaptiveDetectionScheduler detectionScheduler = new AdaptiveDetectionScheduler(50, 1000);
     private final Object frameLock = new Object();
 
     static {
@@ -51,74 +59,22 @@ public class FaceCaptureView {
         OpenCV.loadLocally();
     }
 
-    public FaceCaptureView(Stage stage, Consumer<List<byte[]>> onComplete, Runnable onCancel) {
+    public FaceCaptureView(Stage stage, RecognitionModelService modelService, RecognitionConfig recognitionConfig,
+                           Consumer<List<byte[]>> onComplete, Runnable onCancel) {
+        this.modelService = modelService;
+        this.recognitionConfig = recognitionConfig;
         this.onComplete = onComplete;
         this.onCancel = onCancel;
         // Face detector will be initialized after camera starts (needs resolution)
     }
 
     private void initializeFaceDetector(int width, int height) {
-        try {
-            String modelPath = downloadYuNetModel();
-
-            if (modelPath == null) {
-                System.err.println("Failed to get YuNet model");
-                return;
-            }
-
-            // Create YuNet face detector
-            faceDetector = FaceDetectorYN.create(
-                modelPath,
-                "",  // config (empty for ONNX)
-                new Size(width, height),  // input size
-                0.6f,  // score threshold
-                0.3f,  // nms threshold
-                5000   // top_k
-            );
-
+        // YuNet model file is shared with live recognition
+        // Detect on a downscaled copy; boxes come back in full-resolution coordinates
+        FaceDetectorYN detector = modelService.createFaceDetector(width, height);
+        faceDetector = detector != null ? new ScaledFaceDetector(detector, recognitionConfig.getDetection().getWidth()) : null;
+        if (faceDetector != null) {
             System.out.println("YuNet face detector initialized successfully for registration");
-        } catch (Exception e) {
-            System.err.println("Error loading YuNet: " + e.getMessage());
-        }
-    }
-
-    private String downloadYuNetModel() {
-        try {
-            // Try to load from resources first
-            java.io.InputStream is = getClass().getClassLoader()
-                .getResourceAsStream("face_detection_yunet_2023mar.onnx");
-
-            if (is != null) {
-                System.out.println("Loading YuNet model from resources...");
-                java.io.File tempFile = java.io.File.createTempFile("yunet", ".onnx");
-                tempFile.deleteOnExit();
-
-                java.nio.file.Files.copy(is, tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                is.close();
-
-                System.out.println("YuNet model loaded from resources: " + tempFile.getAbsolutePath());
-                return tempFile.getAbsolutePath();
-            }
-
-            // If not in resources, download from GitHub
-            System.out.println("YuNet model not found in resources, downloading from GitHub...");
-            String modelUrl = "https://github.com/opencv/opencv_zoo/raw/main/models/face_detection_yunet/face_detection_yunet_2023mar.onnx";
-
-            java.io.File tempFile = java.io.File.createTempFile("yunet", ".onnx");
-            tempFile.deleteOnExit();
-
-            // Download the model
-            java.net.URL url = new java.net.URL(modelUrl);
-            java.io.InputStream in = url.openStream();
-            java.nio.file.Files.copy(in, tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-            in.close();
-
-            System.out.println("YuNet model downloaded successfully: " + tempFile.getAbsolutePath());
-            return tempFile.getAbsolutePath();
-
-        } catch (Exception e) {
-            System.err.println("Error loading YuNet model: " + e.getMessage());
-            return null;
         }
     }
 
@@ -160,6 +116,7 @@ public class FaceCaptureView {
         imageView.setFitHeight(675); // 900 * 3/4 aspect ratio
         imageView.setPreserveRatio(true);
         imageView.setStyle("-fx-border-color: black; -fx-border-width: 2;");
+        framePresenter = new FramePresenter(imageView);
 
         centerContent.getChildren().add(imageView);
 
@@ -308,7 +265,19 @@ public class FaceCaptureView {
 
         // Separate thread for continuous face detection (doesn't block rendering)
         detectionThread = new Thread(() -> {
+            int lastFaceCount = 0;
             while (isCapturing) {
+                // Adaptive rate: ~20 Hz while the user moves, down to ~1 Hz when still
+                long wait = detectionScheduler.millisUntilDue();
+                if (wait > 0) {
+                    try {
+                        Thread.sleep(Math.min(wait, 20));
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                    continue;
+                }
+
                 Mat frameToDetect = null;
                 synchronized (frameLock) {
                     if (latestFrame != null && !latestFrame.empty()) {
@@ -317,46 +286,47 @@ public class FaceCaptureView {
                 }
 
                 if (frameToDetect != null && faceDetector != null) {
-                    Mat faces = new Mat();
-                    faceDetector.detect(frameToDetect, faces);
+                    long detectStart = System.nanoTime();
+                    List<FaceDetection> faces;
+                    synchronized (faceDetector) {
+                        faces = faceDetector.detect(frameToDetect);
+                    }
 
-                    int numFaces = faces.rows();
+                    int numFaces = faces.size();
+                    detectionScheduler.onDetection(Math.abs(numFaces - lastFaceCount),
+                            (System.nanoTime() - detectStart) / 1_000_000.0);
+                    lastFaceCount = numFaces;
+                    String rate = " - " + detectionScheduler.describe();
 
                     // Update face detection label
                     if (numFaces == 0) {
                         Platform.runLater(() -> {
-                            faceDetectionLabel.setText("No face detected");
+                            faceDetectionLabel.setText("No face detected" + rate);
                             faceDetectionLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
                         });
                     } else if (numFaces == 1) {
                         Platform.runLater(() -> {
-                            faceDetectionLabel.setText("Face detected");
+                            faceDetectionLabel.setText("Face detected" + rate);
                             faceDetectionLabel.setStyle("-fx-text-fill: #27ae60; -fx-font-weight: bold;");
                         });
                     } else {
                         Platform.runLater(() -> {
-                            faceDetectionLabel.setText("Multiple faces detected - showing largest");
+                            faceDetectionLabel.setText("Multiple faces detected - showing largest" + rate);
                             faceDetectionLabel.setStyle("-fx-text-fill: #f39c12; -fx-font-weight: bold;");
                         });
                     }
 
                     // Store face detections for rendering
-                    synchronized (frameLock) {
-                        if (latestFaceDetections != null) {
-                            latestFaceDetections.release();
-                        }
-                        latestFaceDetections = faces.clone();
-                    }
+                    latestFaceDetections = faces;
 
-                    faces.release();
                     frameToDetect.release();
-                }
-
-                // Small sleep to avoid maxing out CPU
-                try {
-                    Thread.sleep(50); // Run detection ~20 times per second
-                } catch (InterruptedException e) {
-                    break;
+                } else {
+                    // No frame yet
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
                 }
             }
         }, "FaceDetection-Thread");
@@ -380,9 +350,15 @@ public class FaceCaptureView {
                         long elapsed = currentTime - startTime;
                         double fps = frameCount / (elapsed / 1000.0);
                         System.out.println("Camera FPS: " + String.format("%.2f", fps) + " (Frame #" + frameCount + ")");
+                        System.out.println("Preview: presented=" + framePresenter.getPresentedFrames()
+                                + ", dropped=" + framePresenter.getDroppedFrames());
+                        System.out.println(detectionScheduler.describe());
                         lastFpsReport = currentTime;
                     }
 
+                    // Motion estimate for the detection rate
+                    detectionScheduler.observeFrame(frame);
+
                     // Update latest frame for detection thread
                     synchronized (frameLock) {
                         if (latestFrame != null) {
@@ -393,40 +369,15 @@ public class FaceCaptureView {
 
                     // Draw ONLY the largest face rectangle from latest detections
                     Mat displayFrame = frame.clone();
-                    synchronized (frameLock) {
-                        if (latestFaceDetections != null && latestFaceDetections.rows() > 0) {
-                            // Find the largest face by area
-                            int largestIndex = 0;
-                            float largestArea = 0;
-
-                            for (int i = 0; i < latestFaceDetections.rows(); i++) {
-                                float w = (float) latestFaceDetections.get(i, 2)[0];
-                                float h = (float) latestFaceDetections.get(i, 3)[0];
-                                float area = w * h;
-                                if (area > largestArea) {
-                                    largestArea = area;
-                                    largestIndex = i;
-                                }
-                            }
-
-                            // Draw only the largest face
-                            float x = (float) latestFaceDetections.get(largestIndex, 0)[0];
-                            float y = (float) latestFaceDetections.get(largestIndex, 1)[0];
-                            float w = (float) latestFaceDetections.get(largestIndex, 2)[0];
-                            float h = (float) latestFaceDetections.get(largestIndex, 3)[0];
-
-                            Imgproc.rectangle(displayFrame,
-                                new Point((int)x, (int)y),
-                                new Point((int)(x + w), (int)(y + h)),
-                                new Scalar(0, 255, 0), 3);
-                        }
+                    List<FaceDetection> detections = latestFaceDetections;
+                    if (detections != null && !detections.isEmpty()) {
+                        // Draw only the largest face
+                        Rect largest = FaceDetection.largest(detections).box;
+                        Imgproc.rectangle(displayFrame, largest.tl(), largest.br(), new Scalar(0, 255, 0), 3);
                     }
 
-                    // Display EVERY frame - no dropping
-                    Image image = mat2Image(displayFrame);
-                    Platform.runLater(() -> {
-                        imageView.setImage(image);
-                    });
+                    // Hand the frame to the preview (latest frame wins on each JavaFX pulse)
+                    framePresenter.present(displayFrame);
 
                     displayFrame.release();
                 }
@@ -458,51 +409,42 @@ public class FaceCaptureView {
         Mat processedFace = null;
 
         if (faceDetector != null) {
-            // Detect face using YuNet
-            Mat faces = new Mat();
-            faceDetector.detect(frame, faces);
+            // Detect face using YuNet (downscaled; box is in full-resolution coordinates)
+            List<FaceDetection> faces;
+            synchronized (faceDetector) {
+                faces = faceDetector.detect(frame);
+            }
 
-            if (faces.rows() > 0) {
+            if (!faces.isEmpty()) {
                 // Find the largest face (by area)
-                int largestFaceIndex = 0;
-                float largestArea = 0;
-
-                if (faces.rows() > 1) {
+                if (faces.size() > 1) {
                     System.out.println("Multiple faces detected, selecting largest face");
-                    for (int i = 0; i < faces.rows(); i++) {
-                        float w = (float) faces.get(i, 2)[0];
-                        float h = (float) faces.get(i, 3)[0];
-                        float area = w * h;
-                        if (area > largestArea) {
-                            largestArea = area;
-                            largestFaceIndex = i;
-                        }
-                    }
                 }
 
-                // Extract face region from largest detection
-                // YuNet returns: x, y, w, h, x_re, y_re, x_le, y_le, x_nt, y_nt, x_rcm, y_rcm, x_lcm, y_lcm, confidence
-                float x = (float) faces.get(largestFaceIndex, 0)[0];
-                float y = (float) faces.get(largestFaceIndex, 1)[0];
-                float w = (float) faces.get(largestFaceIndex, 2)[0];
-                float h = (float) faces.get(largestFaceIndex, 3)[0];
+                FaceDetection largest = FaceDetection.largest(faces);
 
-                // Create face rectangle
-                Rect faceRect = new Rect((int)x, (int)y, (int)w, (int)h);
+                // Align to the ArcFace landmark template, the same way live recognition does
+                if (recognitionConfig.getAlignment().isEnabled()) {
+                    processedFace = FaceAligner.align(frame, largest.landmarks);
+                }
 
-                // Add padding around face (15% on each side)
-                int padding = (int)(faceRect.width * 0.15);
-                faceRect.x = Math.max(0, faceRect.x - padding);
-                faceRect.y = Math.max(0, faceRect.y - padding);
-                faceRect.width = Math.min(frame.width() - faceRect.x, faceRect.width + 2 * padding);
-                faceRect.height = Math.min(frame.height() - faceRect.y, faceRect.height + 2 * padding);
+                if (processedFace == null) {
+                    // Extract face region from largest detection, cropped from the full-resolution frame
+                    Rect faceRect = largest.box.clone();
 
-                processedFace = frame.submat(faceRect);
+                    // Add padding around face (15% on each side)
+                    int padding = (int)(faceRect.width * 0.15);
+                    faceRect.x = Math.max(0, faceRect.x - padding);
+                    faceRect.y = Math.max(0, faceRect.y - padding);
+                    faceRect.width = Math.min(frame.width() - faceRect.x, faceRect.width + 2 * padding);
+                    faceRect.height = Math.min(frame.height() - faceRect.y, faceRect.height + 2 * padding);
+
+                    processedFace = frame.submat(faceRect);
+                }
             } else {
                 System.out.println("No face detected, using full frame");
                 processedFace = frame.clone();
             }
-            faces.release();
         } else {
             System.out.println("Face detector not available, using full frame");
             processedFace = frame.clone();
@@ -552,6 +494,8 @@ public class FaceCaptureView {
         if (camera != null && camera.isOpened()) {
             camera.release();
         }
+        framePresenter.dispose();
+        detectionScheduler.release();
 
         // Clean up frames
         synchronized (frameLock) {
@@ -559,22 +503,13 @@ public class FaceCaptureView {
                 latestFrame.release();
                 latestFrame = null;
             }
-            if (latestFaceDetections != null) {
-                latestFaceDetections.release();
-                latestFaceDetections = null;
-            }
+            latestFaceDetections = null;
         }
 
         statusLabel.setText("Camera stopped");
         statusLabel.setStyle("-fx-text-fill: gray;");
     }
 
-    private Image mat2Image(Mat frame) {
-        MatOfByte buffer = new MatOfByte();
-        Imgcodecs.imencode(".png", frame, buffer);
-        return new Image(new ByteArrayInputStream(buffer.toArray()));
-    }
-
     private void showAlert(AlertType alertType, String title, String message) {
         Alert alert = new Alert(alertType);
         alert.setTitle(title);
@@ -0,0 +1,191 @@
+package com.cs102.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shows OpenCV camera frames in an ImageView without an image codec round-trip
+ * The camera thread converts each BGR frame to BGRA once and drops it into a single slot
+ * (latest frame wins). An AnimationTimer takes the slot on each JavaFX pulse and copies it into a
+ * direct ByteBuffer that backs a PixelBuffer/WritableImage shown by the ImageView.
+ * Nothing is posted to the FX queue per frame, so a slow FX thread only drops stale frames
+ * instead of queueing them. At most three frame Mats exist: staged, on screen copy, and spare.
+ */
+public class FramePresenter {
+
+    private final ImageView imageView;
+
+    // Latest converted frame waiting for the next pulse, and one recycled Mat for the camera thread
+    private final AtomicReference<Mat> pending = new AtomicReference<>();
+    private final AtomicReference<Mat> spare = new AtomicReference<>();
+    private volatile boolean disposed;
+
+    // Metrics
+    private final AtomicLong submittedFrames = new AtomicLong();
+    private final AtomicLong presentedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    // FX thread only
+    private ByteBuffer pixels;
+    private Mat pixelView; // CV_8UC4 Mat over pixels
+    private PixelBuffer<ByteBuffer> pixelBuffer;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            Mat frame = pending.getAndSet(null);
+            if (frame != null) {
+                upload(frame);
+                recycle(frame);
+            }
+        }
+    };
+
+    public FramePresenter(ImageView imageView) {
+        this.imageView = imageView;
+        runOnFxThread(timer::start);
+    }
+
+    /**
+     * Show a frame; may be called from any thread
+     * The frame is copied, so the caller can reuse or release it immediately.
+     * If the previous frame has not been displayed yet it is dropped.
+     * @param frame BGR (or grayscale / BGRA) frame
+     */
+    public void present(Mat frame) {
+        if (frame == null || frame.empty() || disposed) {
+            return;
+        }
+
+        Mat target = spare.getAndSet(null);
+        if (target == null) {
+            target = new Mat();
+        }
+
+        switch (frame.channels()) {
+            case 1 -> Imgproc.cvtColor(frame, target, Imgproc.COLOR_GRAY2BGRA);
+            case 4 -> frame.copyTo(target);
+            default -> Imgproc.cvtColor(frame, target, Imgproc.COLOR_BGR2BGRA);
+        }
+        submittedFrames.incrementAndGet();
+
+        Mat stale = pending.getAndSet(target);
+        if (stale != null) {
+            droppedFrames.incrementAndGet();
+            recycle(stale);
+        }
+
+        // dispose() may have drained the slot while this frame was being converted
+        if (disposed) {
+            releaseSlot(pending);
+        }
+    }
+
+    /**
+     * Copy a BGRA frame into the displayed image (FX thread)
+     */
+    private void upload(Mat frame) {
+        int width = frame.cols();
+        int height = frame.rows();
+        if (pixelBuffer == null || pixelBuffer.getWidth() != width || pixelBuffer.getHeight() != height) {
+            allocate(width, height);
+        }
+
+        pixelBuffer.updateBuffer(buffer -> {
+            frame.copyTo(pixelView);
+            return null; // Whole image is dirty
+        });
+        presentedFrames.incrementAndGet();
+    }
+
+    /**
+     * Create the direct buffer, its Mat view and the image for a new resolution (FX thread)
+     */
+    private void allocate(int width, int height) {
+        if (pixelView != null) {
+            pixelView.release();
+        }
+
+        pixels = ByteBuffer.allocateDirect(width * height * 4);
+        pixelView = new Mat(height, width, CvType.CV_8UC4, pixels);
+        pixelBuffer = new PixelBuffer<>(width, height, pixels, PixelFormat.getByteBgraPreInstance());
+        imageView.setImage(new WritableImage(pixelBuffer));
+    }
+
+    /**
+     * Keep one Mat for reuse by the camera thread, release any other
+     */
+    private void recycle(Mat frame) {
+        if (!spare.compareAndSet(null, frame)) {
+            frame.release();
+        } else if (disposed) {
+            releaseSlot(spare);
+        }
+    }
+
+    private static void releaseSlot(AtomicReference<Mat> slot) {
+        Mat frame = slot.getAndSet(null);
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    private static void runOnFxThread(Runnable action) {
+        if (Platform.isFxApplicationThread()) {
+            action.run();
+        } else {
+            Platform.runLater(action);
+        }
+    }
+
+    // ========== Metrics ==========
+
+    /**
+     * Frames handed to {@link #present(Mat)}
+     */
+    public long getSubmittedFrames() {
+        return submittedFrames.get();
+    }
+
+    /**
+     * Frames actually drawn on a JavaFX pulse
+     */
+    public long getPresentedFrames() {
+        return presentedFrames.get();
+    }
+
+    /**
+     * Frames replaced by a newer one before they could be drawn
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Stop presenting and release native memory held for the preview
+     * Safe to call while a camera thread is still presenting: frames it hands over afterwards
+     * are released instead of staged.
+     */
+    public void dispose() {
+        disposed = true;
+        runOnFxThread(() -> {
+            timer.stop();
+            releaseSlot(pending);
+            releaseSlot(spare);
+            if (pixelView != null) {
+                pixelView.release();
+            }
+        });
+    }
+}
@@ -9,16 +9,23 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import com.cs102.manager.AuthenticationManager;
 import com.cs102.manager.DatabaseManager;
 import com.cs102.model.AttendanceRecord;
 import com.cs102.model.Course;
-import com.cs102.model.FaceImage;
 import com.cs102.model.Session;
 import com.cs102.model.User;
 import com.cs102.model.UserRole;
+import com.cs102.recognition.AdaptiveDetectionScheduler;
+import com.cs102.recognition.CameraFrameSource;
+import com.cs102.recognition.FrameSource;
+import com.cs102.recognition.RecognitionPipeline;
+import com.cs102.recognition.VideoFileFrameSource;
+import com.cs102.service.LiveSessionState;
+import com.cs102.service.RosterImportService;
 
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -45,6 +52,8 @@ import org.jfree.chart.fx.ChartViewer;
 
 public class ProfessorView {
 
+    private static final long LATE_THRESHOLD_REFRESH_SECONDS = 60; // Pick up Settings changes during live recognition
+
     private Stage stage;
     private User professor;
     private AuthenticationManager authManager;
@@ -1805,108 +1814,55 @@ public class ProfessorView {
             return; // User cancelled
         }
 
-        // Read and process CSV file
-        List<String> studentIds = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
-        int successCount = 0;
-        int skipCount = 0;
-        int errorCount = 0;
-
-        try (java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.FileReader(file))) {
-            String line;
-            int lineNumber = 0;
-
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                String studentId = line.trim();
-
-                // Skip empty lines
-                if (studentId.isEmpty()) {
-                    continue;
-                }
-
-                // Skip header line if it contains "student" or "id" (case insensitive)
-                if (lineNumber == 1 && (studentId.toLowerCase().contains("student") ||
-                        studentId.toLowerCase().contains("id"))) {
-                    continue;
-                }
-
-                // If line has multiple columns (comma-separated), take the first column
-                if (studentId.contains(",")) {
-                    studentId = studentId.split(",")[0].trim();
-                }
-
-                studentIds.add(studentId);
+        // Import in the background: one lookup for all IDs, one enrollment fetch, one batched insert
+        Thread importThread = new Thread(() -> {
+            try (java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.FileReader(file))) {
+                RosterImportService.ImportResult result = authManager.getRosterImportService()
+                        .importRoster(reader, classRow.getCourse(), classRow.getSection());
+                javafx.application.Platform.runLater(() -> showImportResult(result, classRow, studentTable));
+            } catch (Exception e) {
+                javafx.application.Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "File Error",
+                        "Failed to import CSV file: " + e.getMessage()));
             }
+        }, "RosterImport");
+        importThread.setDaemon(true);
+        importThread.start();
+    }
 
-            // Now process each student ID
-            for (String studentId : studentIds) {
-                // Check if student exists
-                Optional<User> studentOpt = databaseManager.findUserByUserId(studentId);
-                if (studentOpt.isEmpty()) {
-                    errors.add("Student ID " + studentId + " not found");
-                    errorCount++;
-                    continue;
-                }
-
-                User student = studentOpt.get();
-                if (student.getRole() != UserRole.STUDENT) {
-                    errors.add(studentId + " has role '" + student.getRole() + "', not 'STUDENT'");
-                    errorCount++;
-                    continue;
-                }
-
-                // Check if already enrolled
-                List<com.cs102.model.Class> enrollments = databaseManager.findEnrollmentsByCourseAndSection(
-                        classRow.getCourse(), classRow.getSection());
-                boolean alreadyEnrolled = enrollments.stream()
-                        .anyMatch(e -> e.getUserId().equals(studentId));
+    private void showImportResult(RosterImportService.ImportResult result, ClassRow classRow,
+            TableView<User> studentTable) {
+        // Refresh the student table
+        loadEnrolledStudents(studentTable, classRow);
 
-                if (alreadyEnrolled) {
-                    skipCount++;
-                    continue;
-                }
+        // Show summary
+        List<RosterImportService.RowError> errors = result.getErrors();
+        StringBuilder message = new StringBuilder();
+        message.append("Import completed in ").append(result.getElapsedMillis()).append("ms!\n\n");
+        message.append("Successfully added: ").append(result.getAdded()).append("\n");
+        message.append("Already enrolled (skipped): ").append(result.getAlreadyEnrolled()).append("\n");
+        if (result.getDuplicates() > 0) {
+            message.append("Duplicate rows (skipped): ").append(result.getDuplicates()).append("\n");
+        }
+        message.append("Errors: ").append(errors.size()).append("\n");
 
-                // Add enrollment
-                com.cs102.model.Class enrollment = new com.cs102.model.Class(
-                        classRow.getCourse(), classRow.getSection(), studentId);
-                databaseManager.saveClassEnrollment(enrollment);
-                successCount++;
+        if (!errors.isEmpty() && errors.size() <= 10) {
+            message.append("\nError details:\n");
+            for (RosterImportService.RowError error : errors) {
+                message.append("- ").append(error).append("\n");
             }
-
-            // Refresh the student table
-            loadEnrolledStudents(studentTable, classRow);
-
-            // Show summary
-            StringBuilder message = new StringBuilder();
-            message.append("Import completed!\n\n");
-            message.append("Successfully added: ").append(successCount).append("\n");
-            message.append("Already enrolled (skipped): ").append(skipCount).append("\n");
-            message.append("Errors: ").append(errorCount).append("\n");
-
-            if (!errors.isEmpty() && errors.size() <= 10) {
-                message.append("\nError details:\n");
-                for (String error : errors) {
-                    message.append("- ").append(error).append("\n");
-                }
-            } else if (errors.size() > 10) {
-                message.append("\nShowing first 10 errors:\n");
-                for (int i = 0; i < 10; i++) {
-                    message.append("- ").append(errors.get(i)).append("\n");
-                }
-                message.append("... and ").append(errors.size() - 10).append(" more errors");
+        } else if (errors.size() > 10) {
+            message.append("\nShowing first 10 errors:\n");
+            for (int i = 0; i < 10; i++) {
+                message.append("- ").append(errors.get(i)).append("\n");
             }
-
-            Alert alert = new Alert(successCount > 0 ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING);
-            alert.setTitle("Import Results");
-            alert.setHeaderText(null);
-            alert.setContentText(message.toString());
-            alert.showAndWait();
-
-        } catch (java.io.IOException e) {
-            showAlert(Alert.AlertType.ERROR, "File Error",
-                    "Failed to read CSV file: " + e.getMessage());
+            message.append("... and ").append(errors.size() - 10).append(" more errors");
         }
+
+        Alert alert = new Alert(result.getAdded() > 0 ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING);
+        alert.setTitle("Import Results");
+        alert.setHeaderText(null);
+        alert.setContentText(message.toString());
+        alert.showAndWait();
     }
 
     private void showAlert(Alert.AlertType type, String title, String message) {
@@ -2495,13 +2451,26 @@ public class ProfessorView {
         VBox cameraBox = new VBox();
         cameraBox.setAlignment(Pos.CENTER);
 
-        ImageView cameraView = new ImageView();
-        cameraView.setFitWidth(900);
-        cameraView.setFitHeight(675);
-        cameraView.setPreserveRatio(true);
-        cameraView.setStyle("-fx-border-color: black; -fx-border-width: 2;");
+        // One view per configured camera; several cameras are tiled side by side
+        int cameraCount = Math.max(1, authManager.getRecognitionConfig().getCameraSources().size());
+        List<ImageView> cameraViews = new ArrayList<>();
+        FlowPane cameraGrid = new FlowPane(10, 10);
+        cameraGrid.setAlignment(Pos.CENTER);
+        for (int i = 0; i < cameraCount; i++) {
+            ImageView cameraView = new ImageView();
+            cameraView.setFitWidth(cameraCount == 1 ? 900 : 440);
+            cameraView.setFitHeight(cameraCount == 1 ? 675 : 330);
+            cameraView.setPreserveRatio(true);
+            cameraView.setStyle("-fx-border-color: black; -fx-border-width: 2;");
+            cameraViews.add(cameraView);
+            cameraGrid.getChildren().add(cameraView);
+        }
+
+        // Pipeline status below the cameras (detection rate, faces/sec)
+        Label pipelineStatusLabel = new Label("Detection starting...");
+        pipelineStatusLabel.setStyle("-fx-text-fill: #555; -fx-font-size: 11px;");
 
-        cameraBox.getChildren().add(cameraView);
+        cameraBox.getChildren().addAll(cameraGrid, pipelineStatusLabel);
         liveRecLayout.setCenter(cameraBox);
 
         mainLayout.setCenter(liveRecLayout);
@@ -2509,7 +2478,7 @@ public class ProfessorView {
         // Start camera and face recognition in background thread
         Thread recognitionThread = new Thread(() -> {
             try {
-                runLiveRecognition(course, section, session, cameraView, logList, stopBtn);
+                runLiveRecognition(course, section, session, cameraViews, pipelineStatusLabel, logList, stopBtn);
             } catch (Exception e) {
                 System.err.println("Error during face recognition: " + e.getMessage());
                 javafx.application.Platform.runLater(() -> {
@@ -2533,14 +2502,14 @@ public class ProfessorView {
     }
 
     private void runLiveRecognition(String course, String section, Session session,
-            ImageView cameraView, ListView<Label> logList, Button stopBtn) {
+            List<ImageView> cameraViews, Label pipelineStatusLabel, ListView<Label> logList, Button stopBtn) {
         // Load OpenCV
         nu.pattern.OpenCV.loadLocally();
 
-        // Initialize ArcFace recognizer
+        // Shared ArcFace recognizer (loaded and warmed up at application start)
         com.cs102.recognition.ArcFaceRecognizer arcFace;
         try {
-            arcFace = new com.cs102.recognition.ArcFaceRecognizer();
+            arcFace = authManager.getRecognitionModelService().getArcFace();
         } catch (Exception e) {
             System.err.println("Failed to initialize ArcFace: " + e.getMessage());
             javafx.application.Platform.runLater(() -> {
@@ -2555,68 +2524,306 @@ public class ProfessorView {
         }
 
         // Get all students enrolled in this course and section
-        List<com.cs102.model.Class> enrollments = databaseManager.findEnrollmentsByCourseAndSection(course, section);
+        // Roster, late threshold and existing check-ins, loaded once for the whole session
+        LiveSessionState sessionState = LiveSessionState.load(databaseManager, session, professor.getUserId());
+        List<String> enrolledUserIds = sessionState.getRoster();
+
         Map<String, User> studentMap = new HashMap<>();
-        Map<String, float[][]> studentFaceEmbeddings = new HashMap<>();
+        for (User student : databaseManager.findUsersByUserIds(enrolledUserIds)) {
+            studentMap.put(student.getUserId(), student);
+        }
 
         System.out.println("Loading student face embeddings...");
 
-        for (com.cs102.model.Class enrollment : enrollments) {
-            String userId = enrollment.getUserId();
-            User student = databaseManager.findUserByUserId(userId).orElse(null);
-            if (student != null) {
-                studentMap.put(userId, student);
+        // Precomputed embeddings for the whole roster in one bulk read
+        Map<String, float[][]> studentFaceEmbeddings = new HashMap<>();
+        try {
+            studentFaceEmbeddings.putAll(databaseManager.loadFaceEmbeddings(studentMap.keySet()));
+        } catch (Exception e) {
+            System.err.println("Failed to load face embeddings: " + e.getMessage());
+        }
 
-                // Load face images for this student and compute ArcFace embeddings
-                List<FaceImage> faceImages = databaseManager.findFaceImagesByUserId(userId);
-                List<float[]> embeddings = new ArrayList<>();
+        System.out.println("Loaded " + studentFaceEmbeddings.size() + " students for ArcFace recognition");
 
-                for (FaceImage faceImage : faceImages) {
-                    try {
-                        byte[] imageData = faceImage.getImageData();
-                        org.opencv.core.MatOfByte matOfByte = new org.opencv.core.MatOfByte(imageData);
+        // Pack every embedding into one contiguous buffer for matching
+        final com.cs102.recognition.EmbeddingGallery gallery = com.cs102.recognition.EmbeddingGallery
+                .fromMap(studentFaceEmbeddings);
 
-                        // Decode image (should be 112x112 RGB from registration)
-                        org.opencv.core.Mat faceMat = org.opencv.imgcodecs.Imgcodecs.imdecode(matOfByte,
-                                org.opencv.imgcodecs.Imgcodecs.IMREAD_COLOR);
+        // Store ArcFace instance for use in detection thread
+        final com.cs102.recognition.ArcFaceRecognizer finalArcFace = arcFace;
 
-                        if (faceMat != null && !faceMat.empty()) {
-                            // Preprocess for ArcFace
-                            org.opencv.core.Mat preprocessed = arcFace.preprocessFace(faceMat);
+        // Rank students by centroid, re-rank the 10 closest; every camera matches against the same gallery
+        RecognitionPipeline pipeline = new RecognitionPipeline(finalArcFace,
+                embedding -> finalArcFace.findBestMatch(embedding, gallery, 0.5, 10));
 
-                            // Extract embedding
-                            float[] embedding = arcFace.extractEmbedding(preprocessed);
-                            embeddings.add(embedding);
+        // Released in the finally block below, however the session ends
+        List<FramePresenter> framePresenters = new ArrayList<>();
+        com.cs102.service.AttendanceCheckInWriter.FailureListener checkInFailureListener = null;
+        try {
+            // Open every configured camera (device index or video file), each with its own detector
+            List<String> cameraSources = authManager.getRecognitionConfig().getCameraSources();
+            for (int i = 0; i < cameraSources.size() && i < cameraViews.size(); i++) {
+                FrameSource frameSource = openRecognitionSource(cameraSources.get(i));
+                if (frameSource == null) {
+                    continue;
+                }
 
-                            // Clean up
-                            faceMat.release();
-                            preprocessed.release();
+                // The detector's input size follows the frames it is given
+                FaceDetectorYN faceDetector = authManager.getRecognitionModelService().createFaceDetector(640, 480);
+                if (faceDetector == null) {
+                    System.err.println("Failed to load YuNet face detector");
+                    frameSource.close();
+                    continue;
+                }
+                pipeline.addCamera(frameSource, faceDetector);
+            }
+
+            if (pipeline.getCameraCount() == 0) {
+                System.err.println("Failed to open camera");
+                return;
+            }
+
+            // Re-read the late threshold while the session runs
+            sessionState.startPeriodicRefresh(LATE_THRESHOLD_REFRESH_SECONDS);
+
+            System.out.println("  Cameras: " + pipeline.getCameraCount());
+            System.out.println("  Detection: staged pipeline (detect -> align -> embed -> match -> check-in), adaptive rate");
+
+            // One preview per camera; BGR -> BGRA pixel upload, no PNG
+            for (int i = 0; i < pipeline.getCameraCount(); i++) {
+                framePresenters.add(new FramePresenter(cameraViews.get(i)));
+            }
+            Set<String> recentlyCheckedIn = ConcurrentHashMap.newKeySet(); // Track recently checked-in students
+            Map<String, Double> highestConfidence = new ConcurrentHashMap<>(); // Track highest confidence per student
+            Map<String, Label> studentLogLabels = new ConcurrentHashMap<>(); // Track log labels for each student (to remove/replace)
+
+            // Runs on the check-in thread; the log shows "Checked In!" only once the write is queued
+            pipeline.setCheckInHandler((userId, confidence) -> {
+                if (!checkInStudent(userId, sessionState)) {
+                    recentlyCheckedIn.remove(userId); // Not queued, retry on a later recognition
+                    return false;
+                }
+                User student = studentMap.get(userId);
+                String timestamp = java.time.LocalTime.now()
+                        .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
+                String logMessage = "[" + timestamp + "] " + (student != null ? student.getName() : userId)
+                        + " Checked In! (" + String.format("%.1f", confidence) + "%)";
+                Label successLabel = new Label(logMessage);
+                successLabel.setStyle("-fx-text-fill: #27ae60; -fx-font-weight: bold; -fx-font-size: 11px;");
+
+                // If there was a previous failure message, replace it
+                Label oldLabel = studentLogLabels.put(userId, successLabel);
+                javafx.application.Platform.runLater(() -> {
+                    if (oldLabel != null) {
+                        logList.getItems().remove(oldLabel);
+                    }
+                    logList.getItems().add(successLabel);
+                    logList.scrollTo(successLabel);
+                });
+                return true;
+            });
+
+            // Check-ins the writer gave up on: undo them so the next recognition checks the student in again
+            checkInFailureListener = (checkIns, error) -> {
+                for (AttendanceRecord checkIn : checkIns) {
+                    if (!session.getId().equals(checkIn.getSessionId())) {
+                        continue;
+                    }
+                    String userId = checkIn.getUserId();
+                    sessionState.clearCheckedIn(userId);
+                    pipeline.retractCheckIn(userId);
+                    recentlyCheckedIn.remove(userId);
+
+                    User student = studentMap.get(userId);
+                    String timestamp = java.time.LocalTime.now()
+                            .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
+                    String logMessage = "[" + timestamp + "] " + (student != null ? student.getName() : userId)
+                            + " Check-in NOT saved (" + error.getMessage() + "), will retry";
+                    Label failureLabel = new Label(logMessage);
+                    failureLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold; -fx-font-size: 11px;");
+
+                    Label oldLabel = studentLogLabels.put(userId, failureLabel);
+                    javafx.application.Platform.runLater(() -> {
+                        if (oldLabel != null) {
+                            logList.getItems().remove(oldLabel);
                         }
-                    } catch (Exception e) {
-                        System.err.println(
-                                "Failed to process face image for " + student.getName() + ": " + e.getMessage());
+                        logList.getItems().add(failureLabel);
+                        logList.scrollTo(failureLabel);
+                    });
+                }
+            };
+            authManager.getAttendanceCheckInWriter().addFailureListener(checkInFailureListener);
+
+            pipeline.setDetectionWidth(authManager.getRecognitionConfig().getDetection().getWidth());
+            pipeline.setAlignFaces(authManager.getRecognitionConfig().getAlignment().isEnabled());
+
+            // Detect fast while students stream in, back off to ~1 Hz when the room is static
+            pipeline.setAdaptiveScheduling(true);
+
+            // Check-in policy: runs once per analysed frame on the match stage
+            pipeline.setResultListener(result -> {
+                for (RecognitionPipeline.Recognition recognition : result.recognitions) {
+                    if (recognition.match == null) {
+                        continue;
+                    }
+                    User student = studentMap.get(recognition.match.userId);
+                    if (student == null) {
+                        continue;
+                    }
+                    String userId = student.getUserId();
+                    String studentName = student.getName();
+
+                    // Track if this is first time seeing this student
+                    boolean isFirstDetection = !studentLogLabels.containsKey(userId);
+
+                    // Keep the highest confidence recorded for this student
+                    double displayConfidence = highestConfidence.merge(userId,
+                            recognition.match.getConfidencePercentage(), Math::max);
+
+                    if (displayConfidence >= 70.0) {
+                        // Check in student (only if not recently checked in)
+                        if (recentlyCheckedIn.add(userId)) {
+                            System.out.println("Attempting to check in student: " + studentName + " (ID: "
+                                    + userId + ") with confidence: " + displayConfidence + "%");
+                            if (!pipeline.submitCheckIn(userId, displayConfidence)) {
+                                recentlyCheckedIn.remove(userId); // Queue full, retry on a later frame
+                            }
+                        }
+                    } else if (isFirstDetection) {
+                        // Only log error if first time seeing this student
+                        String timestamp = java.time.LocalTime.now()
+                                .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
+                        String logMessage = "[" + timestamp + "] " + studentName + " Low Match ("
+                                + String.format("%.1f", displayConfidence) + "%)";
+                        Label failureLabel = new Label(logMessage);
+                        failureLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold; -fx-font-size: 11px;");
+
+                        javafx.application.Platform.runLater(() -> {
+                            logList.getItems().add(failureLabel);
+                            logList.scrollTo(failureLabel);
+                        });
+
+                        studentLogLabels.put(userId, failureLabel);
                     }
                 }
+            });
 
-                if (!embeddings.isEmpty()) {
-                    // Convert List<float[]> to float[][]
-                    float[][] embeddingsArray = embeddings.toArray(new float[0][]);
-                    studentFaceEmbeddings.put(userId, embeddingsArray);
-                    System.out.println("Loaded " + embeddings.size() + " embeddings for student: " + student.getName());
+            // Rendering: every camera frame gets the latest results drawn on it, then goes to the preview
+            long startTime = System.currentTimeMillis();
+            java.util.concurrent.atomic.AtomicLong lastFpsReport = new java.util.concurrent.atomic.AtomicLong(startTime);
+            pipeline.setFrameListener((cameraIndex, frame, latest) -> {
+                // Report FPS and stage latencies every second (from whichever camera thread gets there first)
+                long currentTime = System.currentTimeMillis();
+                long lastReport = lastFpsReport.get();
+                if (currentTime - lastReport >= 1000 && lastFpsReport.compareAndSet(lastReport, currentTime)) {
+                    double fps = pipeline.getGrabbedFrames() / ((currentTime - startTime) / 1000.0);
+                    System.out.println("Recognition Camera FPS: " + String.format("%.2f", fps) + " (all cameras, Frame #"
+                            + pipeline.getGrabbedFrames() + ")");
+                    System.out.println("ArcFace inference pool: " + finalArcFace.getInferencePool().getStatsSummary());
+                    for (int i = 0; i < framePresenters.size(); i++) {
+                        System.out.println("Preview " + i + ": presented=" + framePresenters.get(i).getPresentedFrames()
+                                + ", dropped=" + framePresenters.get(i).getDroppedFrames());
+                    }
+                    System.out.println("Pipeline: " + pipeline.getMetricsSummary());
+                    System.out.println("Check-in writer: " + authManager.getAttendanceCheckInWriter().getMetricsSummary());
+
+                    // Detection rate of every camera plus aggregate throughput
+                    StringBuilder status = new StringBuilder();
+                    for (int i = 0; i < pipeline.getCameraCount(); i++) {
+                        AdaptiveDetectionScheduler scheduler = pipeline.getScheduler(i);
+                        if (scheduler != null) {
+                            if (pipeline.getCameraCount() > 1) {
+                                status.append("Camera ").append(i).append(": ");
+                            }
+                            status.append(scheduler.describe()).append(" | motion ")
+                                    .append(String.format("%.1f%%", scheduler.getMotion() * 100)).append(" | ");
+                        }
+                    }
+                    status.append(String.format("%.1f faces/s", pipeline.getFacesPerSecond()));
+                    status.append(" | ").append(authManager.getAttendanceCheckInWriter().describe());
+                    String statusText = status.toString();
+                    System.out.println(statusText);
+                    javafx.application.Platform.runLater(() -> pipelineStatusLabel.setText(statusText));
+                }
+
+                for (RecognitionPipeline.Recognition recognition : latest.recognitions) {
+                    if (recognition.match == null) {
+                        continue;
+                    }
+                    User student = studentMap.get(recognition.match.userId);
+                    if (student == null) {
+                        continue;
+                    }
+                    org.opencv.core.Rect faceRect = recognition.box;
+                    double displayConfidence = highestConfidence.getOrDefault(student.getUserId(),
+                            recognition.match.getConfidencePercentage());
+
+                    // Green once checked in, red for a low match
+                    org.opencv.core.Scalar boxColor = displayConfidence >= 70.0
+                            ? new org.opencv.core.Scalar(0, 255, 0)
+                            : new org.opencv.core.Scalar(0, 0, 255);
+
+                    // Draw bounding box
+                    org.opencv.imgproc.Imgproc.rectangle(frame,
+                            new org.opencv.core.Point(faceRect.x, faceRect.y),
+                            new org.opencv.core.Point(faceRect.x + faceRect.width, faceRect.y + faceRect.height),
+                            boxColor, 3);
+
+                    // Draw student name and HIGHEST confidence recorded
+                    String label = student.getName() + " (" + String.format("%.1f", displayConfidence) + "%)";
+                    org.opencv.imgproc.Imgproc.putText(frame, label,
+                            new org.opencv.core.Point(faceRect.x, faceRect.y - 10),
+                            org.opencv.imgproc.Imgproc.FONT_HERSHEY_SIMPLEX, 0.6, boxColor, 2);
+                }
+
+                // Hand the frame to the preview (latest frame wins on each JavaFX pulse)
+                framePresenters.get(cameraIndex).present(frame);
+            });
+
+            pipeline.start();
+
+            // Run until the stop button interrupts this thread or every camera closes
+            while (!Thread.currentThread().isInterrupted() && pipeline.isRunning()) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    break;
                 }
             }
+        } finally {
+            // Cleanup: stops every stage, writes pending check-ins and releases the cameras
+            // (the shared ArcFace recognizer stays open for the next session)
+            pipeline.stop();
+            authManager.getAttendanceCheckInWriter().removeFailureListener(checkInFailureListener);
+            sessionState.close();
+            for (FramePresenter framePresenter : framePresenters) {
+                framePresenter.dispose();
+            }
         }
+    }
 
-        System.out.println("Loaded " + studentFaceEmbeddings.size() + " students for ArcFace recognition");
-
-        // Store ArcFace instance for use in detection thread
-        final com.cs102.recognition.ArcFaceRecognizer finalArcFace = arcFace;
+    /**
+     * Open a live recognition camera
+     * @param source Device index (e.g. "0") or path of a video file (replayed at its frame rate)
+     * @return Opened source, or null if it could not be opened
+     */
+    private FrameSource openRecognitionSource(String source) {
+        if (!source.matches("\\d+")) {
+            VideoFileFrameSource video = new VideoFileFrameSource(source, true);
+            if (!video.isOpened()) {
+                System.err.println("Failed to open video " + source);
+                video.close();
+                return null;
+            }
+            System.out.println("Video file " + source + ": " + video.getWidth() + "x" + video.getHeight()
+                    + " at " + String.format("%.1f", video.getFps()) + " FPS");
+            return video;
+        }
 
-        // Open camera
-        org.opencv.videoio.VideoCapture camera = new org.opencv.videoio.VideoCapture(0);
+        org.opencv.videoio.VideoCapture camera = new org.opencv.videoio.VideoCapture(Integer.parseInt(source));
         if (!camera.isOpened()) {
-            System.err.println("Failed to open camera");
-            return;
+            System.err.println("Failed to open camera " + source);
+            return null;
         }
 
         // Configure camera for maximum FPS and performance (matching FaceCaptureView)
@@ -2665,433 +2872,52 @@ public class ProfessorView {
         // Optimize buffer settings for minimal latency
         camera.set(org.opencv.videoio.Videoio.CAP_PROP_BUFFERSIZE, 1);
 
-        System.out.println("Camera optimized for this computer:");
+        System.out.println("Camera " + source + " optimized for this computer:");
         System.out.println("  Resolution: " + selectedWidth + "x" + selectedHeight);
         System.out.println("  FPS: " + String.format("%.1f", actualFps));
-        System.out.println("  Detection: continuous (separate thread)");
-
-        // Main recognition loop with FPS tracking
-        org.opencv.core.Mat frame = new org.opencv.core.Mat();
-        Set<String> recentlyCheckedIn = new HashSet<>(); // Track recently checked-in students
-        Map<String, Double> highestConfidence = new HashMap<>(); // Track highest confidence per student
-        Map<String, Label> studentLogLabels = new HashMap<>(); // Track log labels for each student (to remove/replace)
-        int frameCount = 0;
-        long startTime = System.currentTimeMillis();
-        long lastFpsReport = startTime;
-
-        // Initialize YuNet face detector with camera resolution
-        final FaceDetectorYN finalFaceDetector = initializeFaceDetector(selectedWidth, selectedHeight);
-        if (finalFaceDetector == null) {
-            System.err.println("Failed to load YuNet face detector");
-            camera.release();
-            return;
-        }
-
-        // Shared state for detection thread
-        final org.opencv.core.Mat latestFrame = new org.opencv.core.Mat();
-        final org.opencv.core.Mat detectionResults = new org.opencv.core.Mat();
-        final Object frameLock = new Object();
-        final Map<org.opencv.core.Rect, RecognitionResult> cachedResults = new HashMap<>();
-
-        // Separate thread for continuous face detection and recognition (doesn't block
-        // rendering)
-        Thread detectionThread = new Thread(() -> {
-            while (!Thread.currentThread().isInterrupted() && camera.isOpened()) {
-                org.opencv.core.Mat frameToProcess = new org.opencv.core.Mat();
-                synchronized (frameLock) {
-                    if (!latestFrame.empty()) {
-                        latestFrame.copyTo(frameToProcess);
-                    }
-                }
-
-                if (!frameToProcess.empty()) {
-                    // Detect faces using YuNet
-                    org.opencv.core.Mat faces = new org.opencv.core.Mat();
-                    finalFaceDetector.detect(frameToProcess, faces);
-
-                    System.out.println("DEBUG: Detected " + faces.rows() + " faces");
-
-                    Map<org.opencv.core.Rect, RecognitionResult> newResults = new HashMap<>();
-
-                    // Process each detected face
-                    for (int i = 0; i < faces.rows(); i++) {
-                        float x = (float) faces.get(i, 0)[0];
-                        float y = (float) faces.get(i, 1)[0];
-                        float w = (float) faces.get(i, 2)[0];
-                        float h = (float) faces.get(i, 3)[0];
-
-                        org.opencv.core.Rect faceRect = new org.opencv.core.Rect((int) x, (int) y, (int) w, (int) h);
-
-                        try {
-                            org.opencv.core.Mat face = frameToProcess.submat(faceRect).clone();
-
-                            // Preprocess for ArcFace
-                            org.opencv.core.Mat preprocessed = finalArcFace.preprocessFace(face);
-
-                            // Extract embedding
-                            float[] queryEmbedding = finalArcFace.extractEmbedding(preprocessed);
-
-                            // Find best match using ArcFace
-                            com.cs102.recognition.ArcFaceRecognizer.MatchResult match = finalArcFace
-                                    .findBestMatch(queryEmbedding, studentFaceEmbeddings, 0.5);
-
-                            System.out.println("DEBUG: Extracted embedding for face at (" + x + "," + y + ")");
-
-                            if (match != null) {
-                                System.out.println("DEBUG: Match found! " + match.userId + " with confidence "
-                                        + match.getConfidencePercentage() + "%");
-                                User student = studentMap.get(match.userId);
-                                if (student != null) {
-                                    RecognitionResult result = new RecognitionResult(
-                                            match.userId,
-                                            student.getName(),
-                                            match.getConfidencePercentage());
-                                    newResults.put(faceRect, result);
-                                    System.out.println("Detection Thread: Recognized " + result.studentName +
-                                            " with confidence " + String.format("%.1f", result.confidence) + "%");
-                                }
-                            }
-
-                            face.release();
-                            preprocessed.release();
-                        } catch (Exception e) {
-                            System.err.println("ERROR: Failed to process face - " + e.getMessage());
-                        }
-                    }
-
-                    // Update cached results
-                    synchronized (frameLock) {
-                        cachedResults.clear();
-                        cachedResults.putAll(newResults);
-                        faces.copyTo(detectionResults);
-                    }
-
-                    faces.release();
-                    frameToProcess.release();
-                }
-
-                // Small sleep to avoid maxing out CPU
-                try {
-                    Thread.sleep(100); // Run detection ~10 times per second
-                } catch (InterruptedException e) {
-                    break;
-                }
-            }
-        }, "FaceRecognition-Thread");
-        detectionThread.setDaemon(true);
-        detectionThread.start();
-
-        // Main rendering loop - display ALL frames without dropping
-        while (!Thread.currentThread().isInterrupted() && camera.isOpened()) {
-            if (!camera.read(frame) || frame.empty()) {
-                continue;
-            }
-
-            frameCount++;
-
-            // Report FPS every second
-            long currentTime = System.currentTimeMillis();
-            if (currentTime - lastFpsReport >= 1000) {
-                long elapsed = currentTime - startTime;
-                double fps = frameCount / (elapsed / 1000.0);
-                System.out.println(
-                        "Recognition Camera FPS: " + String.format("%.2f", fps) + " (Frame #" + frameCount + ")");
-                lastFpsReport = currentTime;
-            }
-
-            // Update latest frame for detection thread
-            synchronized (frameLock) {
-                frame.copyTo(latestFrame);
-            }
-
-            // Draw results from detection thread
-            synchronized (frameLock) {
-                for (Map.Entry<org.opencv.core.Rect, RecognitionResult> entry : cachedResults.entrySet()) {
-                    org.opencv.core.Rect faceRect = entry.getKey();
-                    RecognitionResult result = entry.getValue();
-                    // Update highest confidence for this student
-                    double currentHighest = highestConfidence.getOrDefault(result.userId, 0.0);
-                    double displayConfidence = result.confidence;
-
-                    // Track if this is first time seeing this student
-                    boolean isFirstDetection = !studentLogLabels.containsKey(result.userId);
-
-                    // Only update if new confidence is higher
-                    if (result.confidence > currentHighest) {
-                        highestConfidence.put(result.userId, result.confidence);
-                        displayConfidence = result.confidence;
-                    } else {
-                        // Use the previously recorded highest confidence
-                        displayConfidence = currentHighest;
-                    }
-
-                    // Determine box color and handle check-in
-                    org.opencv.core.Scalar boxColor;
-
-                    if (displayConfidence >= 70.0) {
-                        boxColor = new org.opencv.core.Scalar(0, 255, 0); // Green
-
-                        // Check in student (only if not recently checked in)
-                        if (!recentlyCheckedIn.contains(result.userId)) {
-                            System.out.println("Attempting to check in student: " + result.studentName + " (ID: "
-                                    + result.userId + ") with confidence: " + displayConfidence + "%");
-                            checkInStudent(result.userId, session);
-                            recentlyCheckedIn.add(result.userId);
-                            System.out.println("Student " + result.studentName + " added to recentlyCheckedIn set");
-
-                            // If there was a previous failure message, remove it
-                            Label oldLabel = studentLogLabels.get(result.userId);
-
-                            // Create success log entry
-                            String timestamp = java.time.LocalTime.now()
-                                    .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
-                            String logMessage = "[" + timestamp + "] " + result.studentName + " Checked In! ("
-                                    + String.format("%.1f", displayConfidence) + "%)";
-                            Label successLabel = new Label(logMessage);
-                            successLabel
-                                    .setStyle("-fx-text-fill: #27ae60; -fx-font-weight: bold; -fx-font-size: 11px;");
-
-                            final Label oldLabelFinal = oldLabel;
-                            final Label successLabelFinal = successLabel;
-                            javafx.application.Platform.runLater(() -> {
-                                // Remove old failure message if exists
-                                if (oldLabelFinal != null) {
-                                    logList.getItems().remove(oldLabelFinal);
-                                }
-                                // Add success message
-                                logList.getItems().add(successLabelFinal);
-                                logList.scrollTo(successLabelFinal);
-                            });
-
-                            studentLogLabels.put(result.userId, successLabel);
-                        }
-                    } else {
-                        boxColor = new org.opencv.core.Scalar(0, 0, 255); // Red
-
-                        // Only log error if first time seeing this student
-                        if (isFirstDetection) {
-                            String timestamp = java.time.LocalTime.now()
-                                    .format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
-                            String logMessage = "[" + timestamp + "] " + result.studentName + " Low Match ("
-                                    + String.format("%.1f", displayConfidence) + "%)";
-                            Label failureLabel = new Label(logMessage);
-                            failureLabel
-                                    .setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold; -fx-font-size: 11px;");
-
-                            final Label failureLabelFinal = failureLabel;
-                            javafx.application.Platform.runLater(() -> {
-                                logList.getItems().add(failureLabelFinal);
-                                logList.scrollTo(failureLabelFinal);
-                            });
-
-                            studentLogLabels.put(result.userId, failureLabel);
-                        }
-                    }
-
-                    // Draw bounding box
-                    org.opencv.imgproc.Imgproc.rectangle(frame,
-                            new org.opencv.core.Point(faceRect.x, faceRect.y),
-                            new org.opencv.core.Point(faceRect.x + faceRect.width, faceRect.y + faceRect.height),
-                            boxColor, 3);
-
-                    // Draw student name and HIGHEST confidence recorded
-                    String label = result.studentName + " (" + String.format("%.1f", displayConfidence) + "%)";
-                    org.opencv.imgproc.Imgproc.putText(frame, label,
-                            new org.opencv.core.Point(faceRect.x, faceRect.y - 10),
-                            org.opencv.imgproc.Imgproc.FONT_HERSHEY_SIMPLEX, 0.6, boxColor, 2);
-                } // end for loop
-            } // end synchronized
-
-            // Display EVERY frame - no dropping
-            final javafx.scene.image.Image fxImage = mat2Image(frame);
-            javafx.application.Platform.runLater(() -> {
-                cameraView.setImage(fxImage);
-            });
-        }
-
-        // Release the frame after loop ends
-        frame.release();
-
-        // Cleanup
-        camera.release();
-
-        // Close ArcFace session
-        if (finalArcFace != null) {
-            finalArcFace.close();
-        }
-    }
-
-    private FaceDetectorYN initializeFaceDetector(int width, int height) {
-        try {
-            String modelPath = downloadYuNetModel();
-
-            if (modelPath == null) {
-                System.err.println("Failed to get YuNet model");
-                return null;
-            }
-
-            // Create YuNet face detector
-            FaceDetectorYN detector = FaceDetectorYN.create(
-                    modelPath,
-                    "", // config (empty for ONNX)
-                    new org.opencv.core.Size(width, height), // input size
-                    0.6f, // score threshold
-                    0.3f, // nms threshold
-                    5000 // top_k
-            );
-
-            System.out.println("YuNet face detector initialized successfully for live recognition");
-            return detector;
-        } catch (Exception e) {
-            System.err.println("Error loading YuNet: " + e.getMessage());
-            return null;
-        }
-    }
-
-    private String downloadYuNetModel() {
-        try {
-            // Try to load from resources first
-            java.io.InputStream is = getClass().getClassLoader()
-                    .getResourceAsStream("face_detection_yunet_2023mar.onnx");
-
-            if (is != null) {
-                System.out.println("Loading YuNet model from resources...");
-                java.io.File tempFile = java.io.File.createTempFile("yunet", ".onnx");
-                tempFile.deleteOnExit();
-
-                java.nio.file.Files.copy(is, tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                is.close();
-
-                System.out.println("YuNet model loaded from resources: " + tempFile.getAbsolutePath());
-                return tempFile.getAbsolutePath();
-            }
-
-            // If not in resources, download from GitHub
-            System.out.println("YuNet model not found in resources, downloading from GitHub...");
-            String modelUrl = "https://github.com/opencv/opencv_zoo/raw/main/models/face_detection_yunet/face_detection_yunet_2023mar.onnx";
-
-            java.io.File tempFile = java.io.File.createTempFile("yunet", ".onnx");
-            tempFile.deleteOnExit();
-
-            // Download the model
-            java.net.URL url = new java.net.URL(modelUrl);
-            java.io.InputStream in = url.openStream();
-            java.nio.file.Files.copy(in, tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-            in.close();
-
-            System.out.println("YuNet model downloaded successfully: " + tempFile.getAbsolutePath());
-            return tempFile.getAbsolutePath();
-
-        } catch (Exception e) {
-            System.err.println("Error loading YuNet model: " + e.getMessage());
-            return null;
-        }
+        return new CameraFrameSource(camera, "camera " + source);
     }
 
     // OLD HISTOGRAM-BASED METHODS REMOVED - NOW USING ARCFACE
     // See ArcFaceRecognizer class for new recognition implementation
 
-    private void checkInStudent(String userId, Session session) {
+    /**
+     * Queue an automatic check-in
+     * @return false if it could not be queued (the student is left unchecked so it can be retried)
+     */
+    private boolean checkInStudent(String userId, LiveSessionState sessionState) {
         try {
+            Session session = sessionState.getSession();
             System.out.println("checkInStudent called for userId: " + userId + ", sessionId: " + session.getId());
 
-            // Refresh professor data to get the latest late threshold setting
-            Optional<User> refreshedProfessor = databaseManager.findUserByUserId(professor.getUserId());
-            if (refreshedProfessor.isPresent()) {
-                professor = refreshedProfessor.get();
-                System.out.println("Refreshed professor data from database");
+            // Roster and check-in state are in memory; only the write goes to the database
+            if (!sessionState.markCheckedIn(userId)) {
+                System.out.println("Student " + userId + " is not enrolled or already checked in");
+                return true;
             }
 
             // Calculate attendance status based on check-in time using Singapore timezone
-            java.time.ZoneId singaporeZone = java.time.ZoneId.of("Asia/Singapore");
-            java.time.ZonedDateTime now = java.time.ZonedDateTime.now(singaporeZone);
-            java.time.ZonedDateTime sessionStart = java.time.ZonedDateTime.of(
-                session.getDate(),
-                session.getStartTime(),
-                singaporeZone
-            );
-            // Use professor's late threshold setting
-            int lateThresholdMinutes = professor.getLateThreshold();
-            System.out.println("=== LATE THRESHOLD DEBUG ===");
-            System.out.println("Professor: " + professor.getName() + " (" + professor.getUserId() + ")");
-            System.out.println("Late threshold from professor object: " + lateThresholdMinutes + " minutes");
-
-            java.time.ZonedDateTime lateThreshold = sessionStart.plusMinutes(lateThresholdMinutes);
-
-            System.out.println("Current time (Singapore): " + now);
-            System.out.println("Session start time (Singapore): " + sessionStart);
-            System.out.println("Late threshold (" + lateThresholdMinutes + " min after start): " + lateThreshold);
-            System.out.println("Time difference from start: " + java.time.Duration.between(sessionStart, now).toMinutes() + " minutes");
-            System.out.println("=========================");
-
-            String attendanceStatus;
-            if (now.isAfter(lateThreshold)) {
-                attendanceStatus = "Late";
-                System.out.println("Student checking in after " + lateThresholdMinutes + "-minute threshold: LATE");
-            } else {
-                attendanceStatus = "Present";
-                System.out.println("Student checking in within " + lateThresholdMinutes + " minutes: PRESENT");
-            }
+            java.time.ZonedDateTime now = java.time.ZonedDateTime.now(LiveSessionState.SESSION_ZONE);
+            String attendanceStatus = sessionState.getAttendanceStatus(now);
+            System.out.println("Student checking in at " + now + " (late after "
+                    + sessionState.getLateThresholdMinutes() + " minutes): " + attendanceStatus.toUpperCase());
 
             // Convert to LocalDateTime for database storage
             java.time.LocalDateTime checkinTime = now.toLocalDateTime();
 
-            // Check if student already checked in
-            Optional<AttendanceRecord> existingRecord = databaseManager.findAttendanceByUserIdAndSessionId(userId,
-                    session.getId());
-
-            if (existingRecord.isEmpty()) {
-                // No record exists - create new one (shouldn't happen if trigger is working)
-                System.out.println("No existing record found. Creating new attendance record...");
-                AttendanceRecord record = new AttendanceRecord();
-                record.setUserId(userId);
-                record.setSessionId(session.getId());
-                record.setAttendance(attendanceStatus);
-                record.setMethod("Auto");
-                record.setCheckinTime(checkinTime);
-
-                databaseManager.saveAttendanceRecord(record);
-                System.out.println("Successfully checked in student: " + userId + " as " + attendanceStatus + " at " + record.getCheckinTime());
-            } else {
-                // Record exists - update it with check-in time
-                AttendanceRecord record = existingRecord.get();
-                String previousStatus = record.getAttendance();
-
-                // Only update if not already checked in
-                if (record.getCheckinTime() == null) {
-                    System.out
-                            .println("Updating existing record from '" + previousStatus + "' to '" + attendanceStatus + "'...");
-                    record.setCheckinTime(checkinTime);
-                    record.setAttendance(attendanceStatus);
-
-                    databaseManager.saveAttendanceRecord(record); // save() works for both insert and update
-                    System.out
-                            .println("Successfully checked in student: " + userId + " as " + attendanceStatus + " at " + record.getCheckinTime());
-                } else {
-                    System.out.println("Student " + userId + " already checked in at: " + record.getCheckinTime());
-                }
+            // Written in batches by the check-in writer; students already checked in are left untouched
+            if (!authManager.getAttendanceCheckInWriter().submit(userId, session.getId(), attendanceStatus, "Auto",
+                    checkinTime, 1000)) {
+                System.err.println("ERROR: Check-in queue full, could not check in " + userId);
+                sessionState.clearCheckedIn(userId);
+                return false;
             }
+            System.out.println("Queued check-in for student: " + userId + " as " + attendanceStatus + " at " + checkinTime);
+            return true;
         } catch (Exception e) {
             System.err.println("ERROR checking in student: " + e.getMessage());
-        }
-    }
-
-    private javafx.scene.image.Image mat2Image(org.opencv.core.Mat frame) {
-        org.opencv.core.MatOfByte buffer = new org.opencv.core.MatOfByte();
-        org.opencv.imgcodecs.Imgcodecs.imencode(".png", frame, buffer);
-        return new javafx.scene.image.Image(new java.io.ByteArrayInputStream(buffer.toArray()));
-    }
-
-    // Inner class for recognition results
-    private static class RecognitionResult {
-        String userId;
-        String studentName;
-        double confidence;
-
-        RecognitionResult(String userId, String studentName, double confidence) {
-            this.userId = userId;
-            this.studentName = studentName;
-            this.confidence = confidence;
+            sessionState.clearCheckedIn(userId);
+            return false;
         }
     }
 
@@ -3673,6 +3499,7 @@ public class ProfessorView {
         }
 
         // Create missing attendance records for enrolled students who don't have one
+        List<AttendanceRecord> missingRecords = new ArrayList<>();
         for (com.cs102.model.Class enrolledClass : enrolledClasses) {
             String userId = enrolledClass.getUserId();
             if (!existingUserIds.contains(userId)) {
@@ -3684,12 +3511,13 @@ public class ProfessorView {
                 newRecord.setMethod("Manual");
                 newRecord.setCheckinTime(null);
                 newRecord.setNotes("Added manually - not present during session creation");
-
-                // Save to database
-                databaseManager.saveAttendanceRecord(newRecord);
-                records.add(newRecord);
+                missingRecords.add(newRecord);
             }
         }
+        if (!missingRecords.isEmpty()) {
+            // Save to database in one batch
+            records.addAll(databaseManager.saveAttendanceRecords(missingRecords));
+        }
 
         attendanceTable.getItems().addAll(records);
 
@@ -6,6 +6,8 @@ import com.cs102.model.AttendanceRecord;
 import com.cs102.model.Session;
 import com.cs102.model.StudentAttendanceData;
 import com.cs102.model.User;
+import com.cs102.recognition.CameraFrameSource;
+import com.cs102.recognition.RecognitionPipeline;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -692,6 +694,8 @@ public class StudentView {
         // Create FaceCaptureView with callbacks
         FaceCaptureView faceCaptureView = new FaceCaptureView(
             faceDialog,
+            authManager.getRecognitionModelService(),
+            authManager.getRecognitionConfig(),
             (capturedFaces) -> {
                 // Face capture complete - update face images
                 updateFaceImages(capturedFaces);
@@ -892,10 +896,10 @@ public class StudentView {
         nu.pattern.OpenCV.loadLocally();
         addLogEntry(logList, "Initializing face recognition system...", "#3498db");
 
-        // Initialize ArcFace recognizer
+        // Shared ArcFace recognizer (loaded and warmed up at application start)
         com.cs102.recognition.ArcFaceRecognizer arcFace;
         try {
-            arcFace = new com.cs102.recognition.ArcFaceRecognizer();
+            arcFace = authManager.getRecognitionModelService().getArcFace();
             addLogEntry(logList, "ArcFace recognizer initialized", "#27ae60");
         } catch (Exception e) {
             System.err.println("Failed to initialize ArcFace: " + e.getMessage());
@@ -909,27 +913,18 @@ public class StudentView {
 
         // Load student's face embeddings
         addLogEntry(logList, "Loading your face data...", "#3498db");
-        java.util.List<com.cs102.model.FaceImage> faceImages = dbManager.findFaceImagesByUserId(student.getUserId());
         java.util.List<float[]> studentEmbeddings = new java.util.ArrayList<>();
 
         System.out.println("Loading student face embeddings for: " + student.getName());
 
-        for (com.cs102.model.FaceImage faceImage : faceImages) {
-            try {
-                byte[] imageData = faceImage.getImageData();
-                org.opencv.core.MatOfByte matOfByte = new org.opencv.core.MatOfByte(imageData);
-                org.opencv.core.Mat faceMat = org.opencv.imgcodecs.Imgcodecs.imdecode(matOfByte, org.opencv.imgcodecs.Imgcodecs.IMREAD_COLOR);
-
-                if (faceMat != null && !faceMat.empty()) {
-                    org.opencv.core.Mat preprocessed = arcFace.preprocessFace(faceMat);
-                    float[] embedding = arcFace.extractEmbedding(preprocessed);
-                    studentEmbeddings.add(embedding);
-                    faceMat.release();
-                    preprocessed.release();
-                }
-            } catch (Exception e) {
-                System.err.println("Failed to process face image: " + e.getMessage());
+        try {
+            float[][] storedEmbeddings = dbManager.loadFaceEmbeddings(java.util.List.of(student.getUserId()))
+                    .get(student.getUserId());
+            if (storedEmbeddings != null) {
+                studentEmbeddings.addAll(java.util.Arrays.asList(storedEmbeddings));
             }
+        } catch (Exception e) {
+            System.err.println("Failed to load face embeddings: " + e.getMessage());
         }
 
         if (studentEmbeddings.isEmpty()) {
@@ -964,8 +959,9 @@ public class StudentView {
 
         // Initialize YuNet face detector
         addLogEntry(logList, "Initializing face detector...", "#3498db");
-        org.opencv.objdetect.FaceDetectorYN faceDetector = initializeFaceDetector((int)camera.get(org.opencv.videoio.Videoio.CAP_PROP_FRAME_WIDTH),
-                                                                                    (int)camera.get(org.opencv.videoio.Videoio.CAP_PROP_FRAME_HEIGHT));
+        org.opencv.objdetect.FaceDetectorYN faceDetector = authManager.getRecognitionModelService().createFaceDetector(
+                (int)camera.get(org.opencv.videoio.Videoio.CAP_PROP_FRAME_WIDTH),
+                (int)camera.get(org.opencv.videoio.Videoio.CAP_PROP_FRAME_HEIGHT));
         if (faceDetector == null) {
             addLogEntry(logList, "Failed to initialize face detector", "#e74c3c");
             camera.release();
@@ -973,218 +969,131 @@ public class StudentView {
         }
         addLogEntry(logList, "Face detector ready", "#27ae60");
 
-        org.opencv.core.Mat frame = new org.opencv.core.Mat();
-        boolean recognized = false;
-
-        while (!recognized && camera.isOpened()) {
-            if (camera.read(frame) && !frame.empty()) {
-                // Detect faces using YuNet
-                org.opencv.core.Mat faces = new org.opencv.core.Mat();
-                faceDetector.detect(frame, faces);
-
-                if (faces.rows() > 0) {
-                    try {
-                        // Get the largest face
-                        int largestFaceIndex = 0;
-                        float largestArea = 0;
-
-                        for (int i = 0; i < faces.rows(); i++) {
-                            float w = (float) faces.get(i, 2)[0];
-                            float h = (float) faces.get(i, 3)[0];
-                            float area = w * h;
-                            if (area > largestArea) {
-                                largestArea = area;
-                                largestFaceIndex = i;
-                            }
+        // Only the largest face is matched, against this student's own embeddings
+        final com.cs102.recognition.ArcFaceRecognizer finalArcFace = arcFace;
+        RecognitionPipeline pipeline = new RecognitionPipeline(
+                new CameraFrameSource(camera, "camera 0"), faceDetector, finalArcFace,
+                embedding -> {
+                    double maxSimilarity = 0.0;
+                    for (float[] storedEmbedding : studentEmbeddings) {
+                        double similarity = com.cs102.recognition.ArcFaceRecognizer.cosineSimilarity(embedding, storedEmbedding);
+                        if (similarity > maxSimilarity) {
+                            maxSimilarity = similarity;
                         }
-
-                        float x = (float) faces.get(largestFaceIndex, 0)[0];
-                        float y = (float) faces.get(largestFaceIndex, 1)[0];
-                        float w = (float) faces.get(largestFaceIndex, 2)[0];
-                        float h = (float) faces.get(largestFaceIndex, 3)[0];
-
-                        org.opencv.core.Rect faceRect = new org.opencv.core.Rect((int)x, (int)y, (int)w, (int)h);
-
-                        // Extract and process face
-                        org.opencv.core.Mat face = new org.opencv.core.Mat(frame, faceRect);
-                        
-                        org.opencv.core.Mat preprocessed = arcFace.preprocessFace(face);
-                        float[] detectedEmbedding = arcFace.extractEmbedding(preprocessed);
-
-                        // Compare with student's embeddings
-                        double maxSimilarity = 0.0;
-                        for (float[] storedEmbedding : studentEmbeddings) {
-                            double similarity = com.cs102.recognition.ArcFaceRecognizer.cosineSimilarity(detectedEmbedding, storedEmbedding);
-                            if (similarity > maxSimilarity) {
-                                maxSimilarity = similarity;
-                            }
-                        }
-
-                        double confidence = maxSimilarity * 100;
-                        System.out.println("Face detected - Confidence: " + confidence + "%");
-                        addLogEntry(logList, "Face detected - Confidence: " + String.format("%.1f", confidence) + "%", "#3498db");
-
-                        // Draw rectangle
-                        org.opencv.imgproc.Imgproc.rectangle(frame, faceRect.tl(), faceRect.br(), new org.opencv.core.Scalar(0, 255, 0), 2);
-
-                        final double finalConfidence = confidence;
-
-                    if (confidence >= 70) {
-                        // High confidence - mark attendance immediately
-                        recognized = true;
-                        camera.release();
-
-                        addLogEntry(logList, "High confidence match! Marking attendance...", "#27ae60");
-                        javafx.application.Platform.runLater(() -> {
-                            statusLabel.setText("Recognized! Marking attendance...");
-                            statusLabel.setStyle("-fx-text-fill: #27ae60; -fx-font-weight: bold;");
-                        });
-
-                        // Mark attendance
-                        markStudentAttendance(session);
-                        addLogEntry(logList, "Attendance marked successfully", "#27ae60");
-
-                        javafx.application.Platform.runLater(() -> {
-                            dialog.close();
-
-                            // Show success message
-                            Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                            successAlert.setTitle("Attendance Marked");
-                            successAlert.setHeaderText(null);
-                            successAlert.setContentText("Your attendance has been marked successfully!");
-                            successAlert.showAndWait();
-
-                            // Reload attendance data to reflect changes
-                            loadAttendanceData();
-                        });
-
-                    } else if (confidence >= 50) {
-                        // Medium confidence - ask for confirmation
-                        recognized = true;
-                        camera.release();
-
-                        addLogEntry(logList, "Medium confidence - requesting confirmation...", "#f39c12");
-                        javafx.application.Platform.runLater(() -> {
-                            Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION);
-                            confirmAlert.setTitle("Confirm Identity");
-                            confirmAlert.setHeaderText("Confidence: " + String.format("%.1f", finalConfidence) + "%");
-                            confirmAlert.setContentText("Is this " + student.getName() + "?");
-
-                            ButtonType yesButton = new ButtonType("Yes");
-                            ButtonType noButton = new ButtonType("No");
-                            confirmAlert.getButtonTypes().setAll(yesButton, noButton);
-
-                            confirmAlert.showAndWait().ifPresent(response -> {
-                                if (response == yesButton) {
-                                    // User confirmed - mark attendance
-                                    addLogEntry(logList, "Identity confirmed by user", "#27ae60");
-                                    markStudentAttendance(session);
-                                    addLogEntry(logList, "Attendance marked successfully", "#27ae60");
-                                    dialog.close();
-
-                                    Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                                    successAlert.setTitle("Attendance Marked");
-                                    successAlert.setHeaderText(null);
-                                    successAlert.setContentText("Your attendance has been marked successfully!");
-                                    successAlert.showAndWait();
-
-                                    // Reload attendance data to reflect changes
-                                    loadAttendanceData();
-                                } else {
-                                    // User rejected - close and return
-                                    addLogEntry(logList, "Identity rejected by user", "#e74c3c");
-                                    dialog.close();
-                                }
-                            });
-                        });
-                    }
-
-                    } catch (ai.onnxruntime.OrtException e) {
-                        System.err.println("Error during face recognition: " + e.getMessage());
                     }
+                    return new com.cs102.recognition.ArcFaceRecognizer.MatchResult(student.getUserId(), maxSimilarity);
+                });
+        pipeline.setMaxFacesPerFrame(1);
+        pipeline.setDetectionWidth(authManager.getRecognitionConfig().getDetection().getWidth());
+        pipeline.setAlignFaces(authManager.getRecognitionConfig().getAlignment().isEnabled());
+        pipeline.setTracking(false); // Every frame is re-embedded until a decision, so the confidence stays fresh
+
+        // First match with at least 50% confidence decides the outcome
+        java.util.concurrent.atomic.AtomicReference<Double> decidedConfidence = new java.util.concurrent.atomic.AtomicReference<>();
+        pipeline.setResultListener(result -> {
+            for (RecognitionPipeline.Recognition recognition : result.recognitions) {
+                double confidence = recognition.match.similarity * 100;
+                System.out.println("Face detected - Confidence: " + confidence + "%");
+                addLogEntry(logList, "Face detected - Confidence: " + String.format("%.1f", confidence) + "%", "#3498db");
+                if (confidence >= 50) {
+                    decidedConfidence.compareAndSet(null, confidence);
                 }
+            }
+        });
 
-                // Display frame
-                javafx.scene.image.Image image = mat2Image(frame);
-                javafx.application.Platform.runLater(() -> cameraView.setImage(image));
-
-                faces.release();
+        FramePresenter framePresenter = new FramePresenter(cameraView); // BGR -> BGRA pixel upload, no PNG
+        pipeline.setFrameListener((cameraIndex, frame, latest) -> {
+            // Draw rectangle
+            for (RecognitionPipeline.Recognition recognition : latest.recognitions) {
+                org.opencv.imgproc.Imgproc.rectangle(frame, recognition.box.tl(), recognition.box.br(), new org.opencv.core.Scalar(0, 255, 0), 2);
             }
 
+            // Display frame
+            framePresenter.present(frame);
+        });
+
+        pipeline.start();
+
+        // Wait for a decision; also stops when the dialog is cancelled or the camera closes
+        while (decidedConfidence.get() == null && pipeline.isRunning() && dialog.isShowing()) {
             try {
-                Thread.sleep(100); // Check every 100ms
+                Thread.sleep(100);
             } catch (InterruptedException e) {
                 break;
             }
         }
 
-        camera.release();
-    }
-
-    private org.opencv.objdetect.FaceDetectorYN initializeFaceDetector(int width, int height) {
-        try {
-            String modelPath = downloadYuNetModel();
-
-            if (modelPath == null) {
-                System.err.println("Failed to get YuNet model");
-                return null;
-            }
+        pipeline.stop();
+        framePresenter.dispose();
 
-            // Create YuNet face detector
-            org.opencv.objdetect.FaceDetectorYN faceDetector = org.opencv.objdetect.FaceDetectorYN.create(
-                modelPath,
-                "",  // config (empty for ONNX)
-                new org.opencv.core.Size(width, height),  // input size
-                0.6f,  // score threshold
-                0.3f,  // nms threshold
-                5000   // top_k
-            );
-
-            System.out.println("YuNet face detector initialized successfully");
-            return faceDetector;
-        } catch (Exception e) {
-            System.err.println("Error loading YuNet: " + e.getMessage());
-            return null;
+        Double decision = decidedConfidence.get();
+        if (decision == null) {
+            return;
         }
-    }
-
-    private String downloadYuNetModel() {
-        try {
-            // Try to load from resources first
-            java.io.InputStream is = getClass().getClassLoader()
-                .getResourceAsStream("face_detection_yunet_2023mar.onnx");
-
-            if (is != null) {
-                System.out.println("Loading YuNet model from resources...");
-                java.io.File tempFile = java.io.File.createTempFile("yunet", ".onnx");
-                tempFile.deleteOnExit();
+        final double finalConfidence = decision;
 
-                java.nio.file.Files.copy(is, tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                is.close();
-
-                System.out.println("YuNet model loaded from resources: " + tempFile.getAbsolutePath());
-                return tempFile.getAbsolutePath();
-            }
-
-            // If not in resources, download from GitHub
-            System.out.println("YuNet model not found in resources, downloading from GitHub...");
-            String modelUrl = "https://github.com/opencv/opencv_zoo/raw/main/models/face_detection_yunet/face_detection_yunet_2023mar.onnx";
+        if (finalConfidence >= 70) {
+            // High confidence - mark attendance immediately
+            addLogEntry(logList, "High confidence match! Marking attendance...", "#27ae60");
+            javafx.application.Platform.runLater(() -> {
+                statusLabel.setText("Recognized! Marking attendance...");
+                statusLabel.setStyle("-fx-text-fill: #27ae60; -fx-font-weight: bold;");
+            });
 
-            java.io.File tempFile = java.io.File.createTempFile("yunet", ".onnx");
-            tempFile.deleteOnExit();
+            // Mark attendance
+            markStudentAttendance(session);
+            addLogEntry(logList, "Attendance marked successfully", "#27ae60");
 
-            // Download the model
-            java.net.URL url = new java.net.URL(modelUrl);
-            java.io.InputStream in = url.openStream();
-            java.nio.file.Files.copy(in, tempFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-            in.close();
+            javafx.application.Platform.runLater(() -> {
+                dialog.close();
 
-            System.out.println("YuNet model downloaded successfully: " + tempFile.getAbsolutePath());
-            return tempFile.getAbsolutePath();
+                // Show success message
+                Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                successAlert.setTitle("Attendance Marked");
+                successAlert.setHeaderText(null);
+                successAlert.setContentText("Your attendance has been marked successfully!");
+                successAlert.showAndWait();
+
+                // Reload attendance data to reflect changes
+                loadAttendanceData();
+            });
 
-        } catch (Exception e) {
-            System.err.println("Error loading YuNet model: " + e.getMessage());
-            return null;
+        } else {
+            // Medium confidence - ask for confirmation
+            addLogEntry(logList, "Medium confidence - requesting confirmation...", "#f39c12");
+            javafx.application.Platform.runLater(() -> {
+                Alert confirmAlert = new Alert(Alert.AlertType.CONFIRMATION);
+                confirmAlert.setTitle("Confirm Identity");
+                confirmAlert.setHeaderText("Confidence: " + String.format("%.1f", finalConfidence) + "%");
+                confirmAlert.setContentText("Is this " + student.getName() + "?");
+
+                ButtonType yesButton = new ButtonType("Yes");
+                ButtonType noButton = new ButtonType("No");
+                confirmAlert.getButtonTypes().setAll(yesButton, noButton);
+
+                confirmAlert.showAndWait().ifPresent(response -> {
+                    if (response == yesButton) {
+                        // User confirmed - mark attendance
+                        addLogEntry(logList, "Identity confirmed by user", "#27ae60");
+                        markStudentAttendance(session);
+                        addLogEntry(logList, "Attendance marked successfully", "#27ae60");
+                        dialog.close();
+
+                        Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                        successAlert.setTitle("Attendance Marked");
+                        successAlert.setHeaderText(null);
+                        successAlert.setContentText("Your attendance has been marked successfully!");
+                        successAlert.showAndWait();
+
+                        // Reload attendance data to reflect changes
+                        loadAttendanceData();
+                    } else {
+                        // User rejected - close and return
+                        addLogEntry(logList, "Identity rejected by user", "#e74c3c");
+                        dialog.close();
+                    }
+                });
+            });
         }
     }
 
@@ -1260,12 +1169,6 @@ public class StudentView {
         }
     }
 
-    private javafx.scene.image.Image mat2Image(org.opencv.core.Mat frame) {
-        org.opencv.core.MatOfByte buffer = new org.opencv.core.MatOfByte();
-        org.opencv.imgcodecs.Imgcodecs.imencode(".png", frame, buffer);
-        return new javafx.scene.image.Image(new java.io.ByteArrayInputStream(buffer.toArray()));
-    }
-
     private String validateAndSaveSettings(String email, String newPassword,
                                           String confirmPassword, Label statusLabel) {
         boolean emailProvided = !email.isEmpty();
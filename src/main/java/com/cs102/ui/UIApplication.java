@@ -1,6 +1,8 @@
 package com.cs102.ui;
 
+import com.cs102.config.RecognitionConfig;
 import com.cs102.manager.AuthenticationManager;
+import com.cs102.service.RecognitionModelService;
 import javafx.application.Application;
 import javafx.stage.Stage;
 import org.springframework.boot.SpringApplication;
@@ -13,6 +15,10 @@ public class UIApplication extends Application {
     @Override
     public void init() throws Exception {
         springContext = SpringApplication.run(com.cs102.Application.class);
+
+        // Load and warm up the face models in the background while the login screen is shown
+        springContext.getBean(RecognitionModelService.class)
+                .startWarmUp(springContext.getBean(RecognitionConfig.class).getDetection().getWidth());
     }
 
     @Override
@@ -0,0 +1,109 @@
+package com.cs102.recognition;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * EmbeddingGallery bookkeeping across add, remove and re-registration
+ */
+class EmbeddingGalleryTest {
+
+    private static final int DIMENSION = 8;
+    private static final double THRESHOLD = 0.5;
+    private static final int TOP_K = 1; // Below the student count so the centroid path is used
+
+    @Test
+    void removeThenReAddKeepsOwnersConsistent() {
+        EmbeddingGallery gallery = new EmbeddingGallery(DIMENSION);
+        gallery.add("A", new float[][]{axis(0), blend(0, 1)});
+        gallery.add("B", new float[][]{axis(2), blend(2, 3)});
+        gallery.add("C", new float[][]{axis(4), blend(4, 5)});
+
+        assertTrue(gallery.remove("B"));
+        assertFalse(gallery.remove("B"));
+        gallery.add("A", new float[][]{axis(6)});
+
+        assertEquals(2, gallery.getUserCount());
+        assertEquals(5, gallery.size());
+        assertFalse(gallery.contains("B"));
+
+        assertMatches(gallery, axis(0), "A");
+        assertMatches(gallery, axis(6), "A");
+        assertMatches(gallery, axis(4), "C");
+        assertMatches(gallery, blend(4, 5), "C");
+        assertNoMatch(gallery, axis(2));
+        assertNoMatch(gallery, blend(2, 3));
+    }
+
+    @Test
+    void newStudentReusesFreedSlot() {
+        EmbeddingGallery gallery = new EmbeddingGallery(DIMENSION);
+        gallery.add("A", new float[][]{axis(0)});
+        gallery.add("B", new float[][]{axis(2)});
+        gallery.add("C", new float[][]{axis(4)});
+
+        gallery.remove("B");
+        gallery.add("D", new float[][]{axis(2), axis(3)});
+
+        assertEquals(3, gallery.getUserCount());
+        assertEquals(4, gallery.size());
+        assertMatches(gallery, axis(2), "D");
+        assertMatches(gallery, axis(3), "D");
+        assertMatches(gallery, axis(0), "A");
+        assertMatches(gallery, axis(4), "C");
+    }
+
+    @Test
+    void repeatedReRegistrationKeepsMatching() {
+        EmbeddingGallery gallery = new EmbeddingGallery(DIMENSION);
+        gallery.add("A", new float[][]{axis(0)});
+        gallery.add("C", new float[][]{axis(4)});
+
+        for (int i = 0; i < 200; i++) {
+            gallery.remove("B");
+            gallery.add("B", new float[][]{axis(2)});
+            gallery.replace("A", new float[][]{axis(i % 2 == 0 ? 0 : 1)});
+        }
+
+        assertEquals(3, gallery.getUserCount());
+        assertEquals(3, gallery.size());
+        assertMatches(gallery, axis(2), "B");
+        assertMatches(gallery, axis(1), "A");
+        assertNoMatch(gallery, axis(0));
+        assertMatches(gallery, axis(4), "C");
+    }
+
+    private static void assertMatches(EmbeddingGallery gallery, float[] query, String expectedUserId) {
+        ArcFaceRecognizer.MatchResult full = gallery.findBestMatch(query, THRESHOLD);
+        ArcFaceRecognizer.MatchResult topK = gallery.findBestMatch(query, THRESHOLD, TOP_K);
+        assertNotNull(full);
+        assertNotNull(topK);
+        assertEquals(expectedUserId, full.userId);
+        assertEquals(expectedUserId, topK.userId);
+        assertEquals(full.similarity, topK.similarity, 1e-6);
+    }
+
+    private static void assertNoMatch(EmbeddingGallery gallery, float[] query) {
+        assertNull(gallery.findBestMatch(query, THRESHOLD));
+        assertNull(gallery.findBestMatch(query, THRESHOLD, TOP_K));
+    }
+
+    private static float[] axis(int i) {
+        float[] vector = new float[DIMENSION];
+        vector[i] = 1f;
+        return vector;
+    }
+
+    // Unit vector halfway between two axes (similarity 0.707 to each)
+    private static float[] blend(int i, int j) {
+        float[] vector = new float[DIMENSION];
+        vector[i] = (float) Math.sqrt(0.5);
+        vector[j] = (float) Math.sqrt(0.5);
+        return vector;
+    }
+}
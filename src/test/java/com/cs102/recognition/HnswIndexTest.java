@@ -0,0 +1,198 @@
+package com.cs102.recognition;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HnswIndex against the exact {@link EmbeddingGallery} on seeded random enrolment data
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSION = ArcFaceRecognizer.EMBEDDING_SIZE;
+    private static final int STUDENTS = 150;
+    private static final int EMBEDDINGS_PER_STUDENT = 5;
+    private static final int QUERIES = 200;
+    private static final float NOISE = 0.03f;
+
+    private static final int M = 16;
+    private static final int EF_CONSTRUCTION = 200;
+    private static final int EF_SEARCH = 64;
+
+    private static final String MODEL_HASH = "model-a";
+    private static final String FINGERPRINT = "750:abc";
+
+    @TempDir
+    Path tempDir;
+
+    private Random random;
+    private Map<String, float[][]> embeddingsByUser;
+    private List<float[]> identities;
+
+    @BeforeEach
+    void setUp() {
+        random = new Random(42);
+        embeddingsByUser = new HashMap<>();
+        identities = new ArrayList<>();
+        for (int s = 0; s < STUDENTS; s++) {
+            float[] identity = normalize(gaussian(1f));
+            identities.add(identity);
+            float[][] embeddings = new float[EMBEDDINGS_PER_STUDENT][];
+            for (int i = 0; i < EMBEDDINGS_PER_STUDENT; i++) {
+                embeddings[i] = perturb(identity);
+            }
+            embeddingsByUser.put(userId(s), embeddings);
+        }
+    }
+
+    @Test
+    void topOneRecallMatchesExactGallery() {
+        HnswIndex index = HnswIndex.build(embeddingsByUser, M, EF_CONSTRUCTION, EF_SEARCH);
+        EmbeddingGallery exact = EmbeddingGallery.fromMap(embeddingsByUser);
+
+        int agree = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = perturb(identities.get(random.nextInt(STUDENTS)));
+            ArcFaceRecognizer.MatchResult expected = exact.findBestMatch(query, -1.0);
+            ArcFaceRecognizer.MatchResult actual = index.findBestMatch(query, -1.0);
+            assertNotNull(expected);
+            assertNotNull(actual);
+            if (expected.userId.equals(actual.userId)) {
+                agree++;
+            }
+        }
+
+        assertTrue(agree >= QUERIES * 0.98, "top-1 recall " + agree + "/" + QUERIES);
+    }
+
+    @Test
+    void removedStudentsAreNeverReturned() {
+        HnswIndex index = HnswIndex.build(embeddingsByUser, M, EF_CONSTRUCTION, EF_SEARCH);
+
+        List<Integer> removed = List.of(0, 7, 42, 99);
+        for (int s : removed) {
+            assertTrue(index.remove(userId(s)));
+        }
+        assertFalse(index.remove(userId(0)));
+
+        assertEquals(STUDENTS * EMBEDDINGS_PER_STUDENT, index.size());
+        assertEquals((STUDENTS - removed.size()) * EMBEDDINGS_PER_STUDENT, index.getLiveSize());
+        assertEquals(STUDENTS - removed.size(), index.getUserCount());
+
+        for (int s : removed) {
+            // Query with a stored vector of the removed student: their nodes are the nearest ones
+            float[] query = embeddingsByUser.get(userId(s))[0];
+            for (ArcFaceRecognizer.MatchResult result : index.search(query, 10)) {
+                assertNotEquals(userId(s), result.userId);
+            }
+        }
+    }
+
+    @Test
+    void rebuildDropsTombstonesAndKeepsMatches() {
+        HnswIndex index = HnswIndex.build(embeddingsByUser, M, EF_CONSTRUCTION, EF_SEARCH);
+        index.remove(userId(3));
+        index.remove(userId(4));
+
+        HnswIndex rebuilt = index.rebuild();
+
+        int live = (STUDENTS - 2) * EMBEDDINGS_PER_STUDENT;
+        assertEquals(live, rebuilt.size());
+        assertEquals(live, rebuilt.getLiveSize());
+        assertEquals(STUDENTS - 2, rebuilt.getUserCount());
+        assertNull(rebuilt.findBestMatch(embeddingsByUser.get(userId(3))[0], 0.99));
+
+        for (int s = 5; s < 25; s++) {
+            ArcFaceRecognizer.MatchResult match = rebuilt.findBestMatch(embeddingsByUser.get(userId(s))[0], 0.5);
+            assertNotNull(match);
+            assertEquals(userId(s), match.userId);
+        }
+    }
+
+    @Test
+    void saveAndLoadRoundTrip() throws Exception {
+        HnswIndex index = HnswIndex.build(embeddingsByUser, M, EF_CONSTRUCTION, EF_SEARCH);
+        index.remove(userId(10));
+        Path file = tempDir.resolve("face-index.hnsw");
+
+        index.save(file, MODEL_HASH, FINGERPRINT);
+        HnswIndex loaded = HnswIndex.load(file, MODEL_HASH, FINGERPRINT);
+
+        assertNotNull(loaded);
+        assertEquals(index.size(), loaded.size());
+        assertEquals(index.getLiveSize(), loaded.getLiveSize());
+        assertEquals(index.getUserCount(), loaded.getUserCount());
+        assertEquals(EF_SEARCH, loaded.getEfSearch());
+
+        for (int q = 0; q < 50; q++) {
+            float[] query = perturb(identities.get(random.nextInt(STUDENTS)));
+            List<ArcFaceRecognizer.MatchResult> expected = index.search(query, 3);
+            List<ArcFaceRecognizer.MatchResult> actual = loaded.search(query, 3);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).userId, actual.get(i).userId);
+                assertEquals(expected.get(i).similarity, actual.get(i).similarity, 1e-9);
+            }
+        }
+
+        // Removed students stay removed after loading
+        float[] removedQuery = embeddingsByUser.get(userId(10))[0];
+        for (ArcFaceRecognizer.MatchResult result : loaded.search(removedQuery, 10)) {
+            assertNotEquals(userId(10), result.userId);
+        }
+    }
+
+    @Test
+    void loadRejectsMismatchedModelOrFingerprint() throws Exception {
+        HnswIndex index = HnswIndex.build(embeddingsByUser, M, EF_CONSTRUCTION, EF_SEARCH);
+        Path file = tempDir.resolve("face-index.hnsw");
+        index.save(file, MODEL_HASH, FINGERPRINT);
+
+        assertNull(HnswIndex.load(file, "model-b", FINGERPRINT));
+        assertNull(HnswIndex.load(file, MODEL_HASH, "751:def"));
+        assertNull(HnswIndex.load(tempDir.resolve("missing.hnsw"), MODEL_HASH, FINGERPRINT));
+        assertNotNull(HnswIndex.load(file, MODEL_HASH, FINGERPRINT));
+    }
+
+    private static String userId(int student) {
+        return String.format("S%05d", student);
+    }
+
+    private float[] gaussian(float sigma) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+
+    private float[] perturb(float[] identity) {
+        float[] vector = gaussian(NOISE);
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] += identity[i];
+        }
+        return normalize(vector);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(VectorMath.scalarDot(vector, 0, vector, 0, vector.length));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= norm;
+        }
+        return vector;
+    }
+}
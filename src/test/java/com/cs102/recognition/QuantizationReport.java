@@ -0,0 +1,207 @@
+package com.cs102.recognition;
+
+import com.cs102.model.FaceEmbedding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Accuracy-vs-fp32 report for the int8 quantized gallery
+ * Compares {@link QuantizedEmbeddingGallery} against {@link EmbeddingGallery} on either real stored
+ * embeddings or a synthetic gallery shaped like enrolment data (students x 15 embeddings clustered
+ * around an identity): similarity error, top-1 agreement, threshold decisions, memory and match time.
+ *
+ * Real embeddings are read from a CSV export of face_embeddings with one "user_id,hex" row per
+ * embedding, e.g. from psql:
+ *   \copy (SELECT user_id, encode(embedding, 'hex') FROM face_embeddings WHERE model_hash = '...') TO 'embeddings.csv' CSV
+ * Each student's last embedding is held out as an enrolled query, and every tenth student is held
+ * out entirely as a stranger.
+ *
+ * Lives in the test tree so it is not packaged. Build with mvn test-compile, then run with:
+ *   java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes com.cs102.recognition.QuantizationReport [students | embeddings.csv]
+ */
+public class QuantizationReport {
+
+    private static final int DIMENSION = ArcFaceRecognizer.EMBEDDING_SIZE;
+    private static final int EMBEDDINGS_PER_STUDENT = 15;
+    private static final int QUERIES = 1000;
+    private static final int STRANGER_EVERY = 10; // Real data: every tenth student is never enrolled
+    private static final float ENROLMENT_NOISE = 0.025f; // Per-dimension spread of one student's captures
+    private static final float QUERY_NOISE = 0.025f;
+    private static final double[] THRESHOLDS = {0.5, 0.7}; // Match and auto check-in thresholds
+
+    public static void main(String[] args) throws IOException {
+        Map<String, float[][]> embeddingsByUser = new LinkedHashMap<>();
+        List<float[]> queries = new ArrayList<>();
+        Random random = new Random(42);
+
+        String source;
+        if (args.length > 0 && Files.isRegularFile(Path.of(args[0]))) {
+            loadExport(Path.of(args[0]), embeddingsByUser, queries);
+            source = args[0];
+        } else {
+            int students = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+            generateSynthetic(random, students, embeddingsByUser, queries);
+            source = "synthetic";
+        }
+        if (embeddingsByUser.isEmpty() || queries.isEmpty()) {
+            System.err.println("Not enough embeddings to build a gallery and queries");
+            return;
+        }
+        List<String> userIds = new ArrayList<>(embeddingsByUser.keySet());
+        int dimension = queries.get(0).length;
+
+        EmbeddingGallery fp32 = EmbeddingGallery.fromMap(embeddingsByUser);
+        QuantizedEmbeddingGallery int8 = QuantizedEmbeddingGallery.fromMap(embeddingsByUser);
+
+        System.out.println("Kernel: " + VectorMath.describeKernel());
+        System.out.println("Gallery (" + source + "): " + fp32.getUserCount() + " students, " + fp32.size()
+                + " vectors; " + queries.size() + " queries");
+        long fp32Bytes = (long) fp32.size() * (dimension * Float.BYTES + Integer.BYTES);
+        System.out.println(String.format("Memory: fp32 %.1f MB, int8 %.1f MB (%.1fx smaller)",
+                fp32Bytes / 1e6, int8.getMemoryBytes() / 1e6, fp32Bytes / (double) int8.getMemoryBytes()));
+
+        // Per-vector similarity error against a sample of stored vectors
+        byte[] codes = new byte[dimension];
+        double maxError = 0;
+        double totalError = 0;
+        int comparisons = 0;
+        for (float[] query : queries) {
+            float[][] sample = embeddingsByUser.get(userIds.get(random.nextInt(userIds.size())));
+            for (float[] stored : sample) {
+                float scale = QuantizedEmbeddingGallery.quantize(stored, codes, 0);
+                double exact = VectorMath.dot(query, stored);
+                double approx = scale * VectorMath.dotInt8(query, 0, codes, 0, dimension);
+                double error = Math.abs(exact - approx);
+                maxError = Math.max(maxError, error);
+                totalError += error;
+                comparisons++;
+            }
+        }
+        System.out.println(String.format("Similarity error: mean %.5f, max %.5f", totalError / comparisons, maxError));
+
+        // Match decisions
+        for (double threshold : THRESHOLDS) {
+            int agree = 0;
+            double maxMatchError = 0;
+            long fp32Nanos = 0;
+            long int8Nanos = 0;
+            for (float[] query : queries) {
+                long start = System.nanoTime();
+                ArcFaceRecognizer.MatchResult exact = fp32.findBestMatch(query, threshold);
+                fp32Nanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                ArcFaceRecognizer.MatchResult approx = int8.findBestMatch(query, threshold);
+                int8Nanos += System.nanoTime() - start;
+
+                String exactId = exact == null ? null : exact.userId;
+                String approxId = approx == null ? null : approx.userId;
+                if (exactId == null ? approxId == null : exactId.equals(approxId)) {
+                    agree++;
+                }
+                if (exact != null && approx != null) {
+                    maxMatchError = Math.max(maxMatchError, Math.abs(exact.similarity - approx.similarity));
+                }
+            }
+            System.out.println(String.format(
+                    "Threshold %.2f: decisions agree %d/%d (%.2f%%), max best-match error %.5f, "
+                            + "match time fp32 %.2f ms, int8 %.2f ms",
+                    threshold, agree, queries.size(), 100.0 * agree / queries.size(), maxMatchError,
+                    fp32Nanos / (queries.size() * 1e6), int8Nanos / (queries.size() * 1e6)));
+        }
+    }
+
+    /**
+     * Read a "user_id,hex" CSV export of face_embeddings, holding out queries as described above
+     */
+    private static void loadExport(Path file, Map<String, float[][]> embeddingsByUser, List<float[]> queries)
+            throws IOException {
+        Map<String, List<float[]>> grouped = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            String[] fields = line.trim().split(",");
+            if (fields.length < 2 || fields[1].isBlank()) {
+                continue;
+            }
+            String hex = fields[1].trim();
+            if (hex.startsWith("\\x")) {
+                hex = hex.substring(2); // bytea hex output format
+            }
+            try {
+                grouped.computeIfAbsent(fields[0].trim(), k -> new ArrayList<>())
+                        .add(FaceEmbedding.fromBytes(HexFormat.of().parseHex(hex)));
+            } catch (IllegalArgumentException e) {
+                // Header or malformed row
+            }
+        }
+
+        int index = 0;
+        for (Map.Entry<String, List<float[]>> entry : grouped.entrySet()) {
+            List<float[]> embeddings = entry.getValue();
+            if (index++ % STRANGER_EVERY == 0) {
+                queries.addAll(embeddings);
+            } else if (embeddings.size() > 1) {
+                queries.add(embeddings.remove(embeddings.size() - 1));
+                embeddingsByUser.put(entry.getKey(), embeddings.toArray(new float[0][]));
+            } else {
+                embeddingsByUser.put(entry.getKey(), embeddings.toArray(new float[0][]));
+            }
+        }
+    }
+
+    /**
+     * Identities, their enrolment embeddings, and queries (half enrolled, half strangers)
+     */
+    private static void generateSynthetic(Random random, int students, Map<String, float[][]> embeddingsByUser,
+                                          List<float[]> queries) {
+        List<float[]> identities = new ArrayList<>();
+        for (int s = 0; s < students; s++) {
+            float[] identity = normalize(gaussian(random, 1f));
+            identities.add(identity);
+            float[][] embeddings = new float[EMBEDDINGS_PER_STUDENT][];
+            for (int i = 0; i < EMBEDDINGS_PER_STUDENT; i++) {
+                embeddings[i] = perturb(random, identity, ENROLMENT_NOISE);
+            }
+            embeddingsByUser.put("student-" + s, embeddings);
+        }
+
+        for (int q = 0; q < QUERIES; q++) {
+            if (q % 2 == 0) {
+                queries.add(perturb(random, identities.get(random.nextInt(students)), QUERY_NOISE));
+            } else {
+                queries.add(normalize(gaussian(random, 1f)));
+            }
+        }
+    }
+
+    private static float[] gaussian(Random random, float sigma) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+
+    private static float[] perturb(Random random, float[] identity, float sigma) {
+        float[] vector = gaussian(random, sigma);
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] += identity[i];
+        }
+        return normalize(vector);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(VectorMath.scalarDot(vector, 0, vector, 0, vector.length));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= norm;
+        }
+        return vector;
+    }
+}
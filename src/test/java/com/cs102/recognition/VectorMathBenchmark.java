@@ -0,0 +1,79 @@
+package com.cs102.recognition;
+
+import java.util.Random;
+
+/**
+ * Micro-benchmark comparing the scalar and Vector API similarity kernels on 512-d embeddings
+ *
+ * Lives in the test tree so it is not packaged. Build with mvn test-compile, then run with the
+ * incubator module enabled, otherwise only the scalar kernel is measured:
+ *   java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes com.cs102.recognition.VectorMathBenchmark
+ */
+public class VectorMathBenchmark {
+
+    private static final int DIMENSION = 512;
+    private static final int GALLERY_SIZE = 300 * 15; // 300 students x 15 embeddings
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 500;
+
+    // Written to so the JIT cannot remove the benchmarked loops
+    private static volatile float sink;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        float[] gallery = new float[GALLERY_SIZE * DIMENSION];
+        for (int i = 0; i < gallery.length; i++) {
+            gallery[i] = (float) random.nextGaussian();
+        }
+        float[] query = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            query[i] = (float) random.nextGaussian();
+        }
+
+        System.out.println("Active kernel: " + VectorMath.describeKernel());
+        System.out.println("Comparing one query against " + GALLERY_SIZE + " embeddings of " + DIMENSION + " floats");
+
+        double scalarNs = measure("scalar", () -> {
+            float best = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < GALLERY_SIZE; i++) {
+                best = Math.max(best, VectorMath.scalarDot(query, 0, gallery, i * DIMENSION, DIMENSION));
+            }
+            sink = best;
+        });
+
+        if (!VectorMath.isSimdEnabled()) {
+            System.out.println("Vector API not available - start the JVM with --add-modules jdk.incubator.vector");
+            return;
+        }
+
+        double simdNs = measure("vector", () -> {
+            float best = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < GALLERY_SIZE; i++) {
+                best = Math.max(best, VectorMath.dot(query, 0, gallery, i * DIMENSION, DIMENSION));
+            }
+            sink = best;
+        });
+
+        System.out.println(String.format("Speed-up: %.2fx", scalarNs / simdNs));
+    }
+
+    /**
+     * Time one kernel and print nanoseconds per 512-d dot product
+     */
+    private static double measure(String name, Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            round.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        double nsPerDot = elapsed / (double) (MEASURED_ROUNDS * (long) GALLERY_SIZE);
+        System.out.println(String.format("  %-7s %.1f ns per dot product (%.2f ms per full gallery scan)",
+                name, nsPerDot, elapsed / (MEASURED_ROUNDS * 1_000_000.0)));
+        return nsPerDot;
+    }
+}